@@ -1,9 +1,13 @@
 package org.iam;
 
-import org.iam.common.CVC5Encoder;
-import org.iam.common.Z3Encoder;
+import org.iam.common.CachingEncoder;
+import org.iam.common.InstrumentedEncoder;
+import org.iam.common.PortfolioEncoder;
+import org.iam.common.PortfolioStats;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverLimits;
 import org.iam.core.Miner;
+import org.iam.core.RelationCache;
 import org.iam.utils.Parameter;
 import org.iam.common.basetypes.Policy;
 import org.iam.common.basetypes.JsonFindings;
@@ -11,6 +15,8 @@ import org.iam.common.basetypes.Finding;
 import org.iam.utils.FileUtil;
 import org.iam.utils.LoggerUtil;
 import org.iam.utils.PolicyParser;
+import org.iam.utils.SolverMetrics;
+import org.iam.utils.SolverProviders;
 import org.iam.utils.TimeMeasure;
 import org.apache.commons.cli.*;
 
@@ -36,13 +42,77 @@ public class CmdRun {
         options.addOption(Option.builder("s")
                 .longOpt("solver")
                 .hasArg(true)
-                .desc("use which SMT solver, CVC5 or Z3")
+                .desc("use which SMT solver, CVC5, Z3, PORTFOLIO (race both) or AUTOMATA (in-JVM, no native solver)")
                 .build());
         options.addOption(Option.builder("r")
                 .longOpt("reduce")
                 .hasArg(false)
                 .desc("reduce the number of intents")
                 .build());
+        options.addOption(Option.builder("t")
+                .longOpt("threads")
+                .hasArg(true)
+                .desc("the number of mining threads, each with its own solver (default 1)")
+                .build());
+        options.addOption(Option.builder("o")
+                .longOpt("order")
+                .hasArg(true)
+                .desc("the order of the mining work list, FIFO, LIFO, PRIORITY (most general first) or COST "
+                        + "(cheapest check first) (default FIFO, PRIORITY when mining is budgeted)")
+                .build());
+        options.addOption(Option.builder("c")
+                .longOpt("relation-cache")
+                .hasArg(true)
+                .desc("a file caching value relations between runs, created if missing")
+                .build());
+        options.addOption(Option.builder("q")
+                .longOpt("query-cache")
+                .hasArg(true)
+                .desc("memoize up to this many solver decisions (default 0, disabled)")
+                .build());
+        options.addOption(Option.builder("p")
+                .longOpt("portfolio-stats")
+                .hasArg(true)
+                .desc("a file keeping the per-query-class wins of the PORTFOLIO solver between runs")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("timeout")
+                .hasArg(true)
+                .desc("the time limit of a single solver query in milliseconds (default 0, unbounded)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("rlimit")
+                .hasArg(true)
+                .desc("the resource limit of a single solver query (default 0, unbounded)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("phase-timeout")
+                .hasArg(true)
+                .desc("the time limit in milliseconds of each of the mining phase, including the value relations, "
+                        + "and the reduction phase (default 0, unbounded)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("call-budget")
+                .hasArg(true)
+                .desc("the number of checks the mining phase may make, value relations and subsumption checks included; "
+                        + "it is checked before each finding is expanded, so the findings in progress may exceed it "
+                        + "(default 0, unbounded)")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("greedy-cover")
+                .hasArg(false)
+                .desc("reduce by the heuristic set cover only, without the exact ILP refinement")
+                .build());
+        options.addOption(Option.builder()
+                .longOpt("cover-timeout")
+                .hasArg(true)
+                .desc("the time limit of the exact set cover of a reduction in milliseconds (default 0, unbounded)")
+                .build());
+        options.addOption(Option.builder("i")
+                .longOpt("instrument")
+                .hasArg(false)
+                .desc("record solver call statistics and phase times into a _stats.json file")
+                .build());
 
         CommandLineParser parser = new DefaultParser();
         try {
@@ -63,9 +133,15 @@ public class CmdRun {
                     case "CVC5":
                         Parameter.setActiveSolver(Parameter.SolverType.CVC5);
                         break;
+                    case "PORTFOLIO":
+                        Parameter.setActiveSolver(Parameter.SolverType.PORTFOLIO);
+                        break;
+                    case "AUTOMATA":
+                        Parameter.setActiveSolver(Parameter.SolverType.AUTOMATA);
+                        break;
                     default:
                         throw new ParseException(
-                                String.format("Invalid type of solver: '%s' (Available options: Z3, CVC5, ABC)", optionValue)
+                                String.format("Invalid type of solver: '%s' (Available options: Z3, CVC5, PORTFOLIO, AUTOMATA)", optionValue)
                         );
                 }
             }
@@ -74,6 +150,82 @@ public class CmdRun {
                 Parameter.isReduced = true;
             }
 
+            if (cmd.hasOption("t")) {
+                String optionValue = cmd.getOptionValue("t");
+                try {
+                    Parameter.threads = Integer.parseInt(optionValue);
+                } catch (NumberFormatException e) {
+                    throw new ParseException(String.format("Invalid number of threads: '%s'", optionValue));
+                }
+                if (Parameter.threads < 1) {
+                    throw new ParseException(String.format("Invalid number of threads: '%s'", optionValue));
+                }
+            }
+
+            if (cmd.hasOption("o")) {
+                String optionValue = cmd.getOptionValue("o");
+                try {
+                    Parameter.workListOrder = Parameter.WorkListOrder.valueOf(optionValue.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException(
+                            String.format("Invalid order of work list: '%s' (Available options: FIFO, LIFO, PRIORITY, COST)", optionValue)
+                    );
+                }
+            }
+
+            if (cmd.hasOption("c")) {
+                Parameter.relationCache = Paths.get(cmd.getOptionValue("c"));
+            }
+
+            if (cmd.hasOption("q")) {
+                String optionValue = cmd.getOptionValue("q");
+                try {
+                    Parameter.queryCacheSize = Integer.parseInt(optionValue);
+                } catch (NumberFormatException e) {
+                    throw new ParseException(String.format("Invalid size of query cache: '%s'", optionValue));
+                }
+                if (Parameter.queryCacheSize < 0) {
+                    throw new ParseException(String.format("Invalid size of query cache: '%s'", optionValue));
+                }
+            }
+
+            if (cmd.hasOption("p")) {
+                Parameter.portfolioStats = Paths.get(cmd.getOptionValue("p"));
+            }
+
+            if (cmd.hasOption("timeout")) {
+                Parameter.queryTimeout = parseLimit(cmd.getOptionValue("timeout"), "query timeout");
+            }
+
+            if (cmd.hasOption("rlimit")) {
+                Parameter.queryRlimit = parseLimit(cmd.getOptionValue("rlimit"), "resource limit");
+            }
+
+            if (cmd.hasOption("phase-timeout")) {
+                Parameter.phaseTimeout = parseLimit(cmd.getOptionValue("phase-timeout"), "phase timeout");
+            }
+
+            if (cmd.hasOption("call-budget")) {
+                Parameter.callBudget = parseLimit(cmd.getOptionValue("call-budget"), "solver call budget");
+            }
+
+            if (cmd.hasOption("greedy-cover")) {
+                Parameter.isGreedyCover = true;
+            }
+
+            if (cmd.hasOption("cover-timeout")) {
+                Parameter.coverTimeout = parseLimit(cmd.getOptionValue("cover-timeout"), "set cover timeout");
+            }
+
+            // Budgeted mining is anytime: visit the most promising findings first unless told otherwise.
+            if (!cmd.hasOption("o") && (Parameter.phaseTimeout > 0 || Parameter.callBudget > 0)) {
+                Parameter.workListOrder = Parameter.WorkListOrder.PRIORITY;
+            }
+
+            if (cmd.hasOption("i")) {
+                Parameter.isInstrumented = true;
+            }
+
             if (cmd.hasOption("f")) {
                 String filePath = cmd.getOptionValue("f");
                 Path inputPath = Paths.get(filePath);
@@ -91,6 +243,18 @@ public class CmdRun {
         }
     }
 
+    private static int parseLimit(String optionValue, String name) throws ParseException {
+        try {
+            int limit = Integer.parseInt(optionValue);
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new ParseException(String.format("Invalid %s: '%s'", name, optionValue));
+    }
+
     public static void runMiner(Path inputPath) throws IOException {
         Path outputPath = FileUtil.replaceThirdLastLevel(inputPath);
         FileUtil.createDirectoryIfNotExists(outputPath);
@@ -106,24 +270,46 @@ public class CmdRun {
         Parameter.timeLog = outputPath.resolve(FileUtil.changeToCsvWithTime(fileName)).toString();
 
         TimeMeasure timeMeasure = new TimeMeasure();
-        Miner miner = new Miner();
+        RelationCache relationCache = Parameter.relationCache == null ? null : RelationCache.open(Parameter.relationCache);
+        Miner miner = new Miner(relationCache);
 
+        long parseStart = System.nanoTime();
         Policy<?> policy = PolicyParser.parseFile(inputPath);
+        timeMeasure.addPhase("parsing", System.nanoTime() - parseStart);
         System.out.println(policy);
         Parameter.LOGGER.info("[1/5]  finish parser policy");
 
-        EncodedAPI<?> encoder;
-        if (Parameter.getActiveSolver().equals(Parameter.SolverType.CVC5)) {
-            encoder = new CVC5Encoder();
-        } else {
-            encoder = new Z3Encoder();
+        SolverLimits limits = new SolverLimits(Parameter.queryTimeout, Parameter.queryRlimit);
+        EncodedAPI<?> encoder = SolverProviders.create(Parameter.getActiveSolver(), limits);
+        PortfolioStats portfolioStats = encoder instanceof PortfolioEncoder portfolioEncoder
+                ? portfolioEncoder.getStats() : null;
+        SolverMetrics solverMetrics = null;
+        if (Parameter.isInstrumented) {
+            solverMetrics = new SolverMetrics();
+            encoder = new InstrumentedEncoder<>(encoder, solverMetrics);
+        }
+        if (Parameter.queryCacheSize > 0) {
+            encoder = new CachingEncoder<>(encoder, Parameter.queryCacheSize);
         }
         long startTime = System.nanoTime();
         Set<Finding<?>> ansFindings = miner.mineIntent(policy, timeMeasure, encoder);
+        if (relationCache != null) {
+            relationCache.close();
+        }
         Parameter.LOGGER.info("[3/5]  finish findings mining : " + ansFindings.size());
+        Parameter.LOGGER.info(String.format("Checks answered without the solver: %d by models, %d by unsat cores; "
+                        + "%d empty subtrees pruned",
+                miner.getModelAnswers(), miner.getCoreAnswers(), miner.getEmptySubtrees()));
+        if (!miner.getApproximateFindings().isEmpty()) {
+            Parameter.LOGGER.warning("approximate findings (solver limits hit) : " + miner.getApproximateFindings().size());
+        }
+        if (!miner.getFrontier().isEmpty()) {
+            Parameter.LOGGER.warning(String.format("mining budget exhausted after %d checks, unexplored frontier : %d",
+                    miner.getSolverCalls(), miner.getFrontier().size()));
+        }
 
         if (Parameter.isReduced) {
-            ansFindings = miner.reduceIntent(policy, ansFindings, encoder);
+            ansFindings = miner.reduceIntent(policy, ansFindings, encoder, timeMeasure);
             Parameter.LOGGER.info("[5/5]  finish findings reduction : " + ansFindings.size());
         } else {
             Parameter.LOGGER.info("[4/5]  successful generate file");
@@ -131,14 +317,34 @@ public class CmdRun {
         }
 
         long endTime = System.nanoTime();
+        if (encoder instanceof CachingEncoder<?> cachingEncoder) {
+            Parameter.LOGGER.info(String.format("Query cache: %d hits, %d misses",
+                    cachingEncoder.getHits(), cachingEncoder.getMisses()));
+        }
+        if (portfolioStats != null) {
+            Parameter.LOGGER.info(portfolioStats.toString());
+            if (Parameter.portfolioStats != null) {
+                portfolioStats.save(Parameter.portfolioStats);
+            }
+        }
         timeMeasure.setWholeTime(endTime - startTime);
-        JsonFindings jsonFindings = new JsonFindings(ansFindings);
+        JsonFindings jsonFindings = new JsonFindings(ansFindings, miner.getApproximateFindings());
 
         Path outputFindingPath = outputPath.resolve(FileUtil.changeToJsonWithFindings(fileName));
         JsonFindings.printToFile(jsonFindings, outputFindingPath);
         Parameter.LOGGER.info("The findings file was output to " + outputFindingPath);
+        if (!miner.getFrontier().isEmpty()) {
+            Path outputFrontierPath = outputPath.resolve(FileUtil.changeToJsonWithFrontier(fileName));
+            JsonFindings.printToFile(new JsonFindings(miner.getFrontier()), outputFrontierPath);
+            Parameter.LOGGER.info("The unexplored frontier was output to " + outputFrontierPath);
+        }
         Parameter.LOGGER.info("The time file was output to " + Parameter.timeLog);
         Parameter.LOGGER.info(String.format("Time: %.4f%n", (endTime - startTime) / 1e9));
         timeMeasure.writeToFile(Parameter.timeLog);
+        if (solverMetrics != null) {
+            Path outputStatsPath = outputPath.resolve(FileUtil.changeToJsonWithStats(fileName));
+            solverMetrics.writeToFile(outputStatsPath, timeMeasure);
+            Parameter.LOGGER.info("The solver statistics file was output to " + outputStatsPath);
+        }
     }
 }
@@ -0,0 +1,265 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.GrammarlyAPI;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.automata.Atom;
+import org.iam.common.automata.Bdd;
+import org.iam.common.automata.BddNode;
+import org.iam.common.vars.VarKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-JVM backend: formulas are BDDs over string and address atoms, and satisfiability is decided
+ * by searching the BDD for a path whose atoms the glob automata and address ranges can satisfy
+ * together. Every answer is definitive, no native memory is used and one instance can be shared by
+ * any number of threads; only the incremental base is kept per thread.
+ */
+public class AutomataEncoder implements EncodedAPI<BddNode> {
+
+    private final Bdd bdd = new Bdd();
+    private final Map<BddNode, Boolean> satisfiable = new ConcurrentHashMap<>();
+    private final ThreadLocal<BddNode> base = new ThreadLocal<>();
+
+    @Override
+    public BddNode mkFalse() {
+        return bdd.FALSE;
+    }
+
+    @Override
+    public BddNode mkTrue() {
+        return bdd.TRUE;
+    }
+
+    @Override
+    public BddNode mkReMatch(String key, String regex) {
+        if (regex.equals("*")) {
+            return mkTrue();
+        }
+        return bdd.atom(new Atom.StringAtom(key, Atom.StringKind.PATTERN, regex));
+    }
+
+    @Override
+    public BddNode mkStringEq(String key, String value) {
+        return bdd.atom(new Atom.StringAtom(key, Atom.StringKind.LITERAL, value));
+    }
+
+    @Override
+    public BddNode mkStringEqIgnoreCase(String key, String value) {
+        if (value.isEmpty()) {
+            return mkStringEq(key, value);
+        }
+        return bdd.atom(new Atom.StringAtom(key, Atom.StringKind.LITERAL_IGNORE_CASE, value));
+    }
+
+    @Override
+    public BddNode mkIpMatch(String key, String cidr) {
+        IpRangeSet range = IpRangeSet.ofCidr(cidr);
+        if (range.isEmpty()) {
+            return mkFalse();
+        }
+        if (range.equals(IpRangeSet.ALL)) {
+            return mkTrue();
+        }
+        return bdd.atom(new Atom.IpAtom(key, range));
+    }
+
+    @Override
+    public BddNode and(List<BddNode> exprs) {
+        BddNode result = bdd.TRUE;
+        for (BddNode expr : exprs) {
+            if (expr != null) {
+                result = bdd.and(result, expr);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public BddNode and(BddNode... exprs) {
+        return and(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final BddNode and(GrammarlyAPI<BddNode>... exprs) {
+        return and(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public BddNode or(List<BddNode> exprs) {
+        BddNode result = bdd.FALSE;
+        for (BddNode expr : exprs) {
+            result = bdd.or(result, expr);
+        }
+        return result;
+    }
+
+    @Override
+    public BddNode or(BddNode... exprs) {
+        return or(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final BddNode or(GrammarlyAPI<BddNode>... exprs) {
+        return or(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public BddNode not(BddNode expr) {
+        return bdd.not(expr);
+    }
+
+    @Override
+    public BddNode not(GrammarlyAPI<BddNode> expr) {
+        return bdd.not(expr.encode(this));
+    }
+
+    @Override
+    public Boolean check(BddNode expr) {
+        Boolean sat = satisfiable.get(expr);
+        if (sat == null) {
+            sat = bdd.findModel(expr) != null;
+            // Dropped as a whole once full, like the memo tables of the Bdd; it also keeps its nodes alive.
+            if (satisfiable.size() >= Bdd.CACHE_LIMIT) {
+                satisfiable.clear();
+            }
+            satisfiable.put(expr, sat);
+        }
+        return sat;
+    }
+
+    @Override
+    public SolverStatus checkStatus(BddNode expr) {
+        return check(expr) ? SolverStatus.SAT : SolverStatus.UNSAT;
+    }
+
+    @Override
+    public Boolean checkIntersection(List<BddNode> exprs) {
+        return check(and(exprs));
+    }
+
+    @Override
+    public void setBase(BddNode expr) {
+        base.set(expr);
+    }
+
+    @Override
+    public void clearBase() {
+        base.remove();
+    }
+
+    @Override
+    public Boolean checkWithBase(BddNode expr) {
+        BddNode current = base.get();
+        return check(current == null ? expr : bdd.and(current, expr));
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(BddNode expr) {
+        return checkWithBase(expr) ? SolverStatus.SAT : SolverStatus.UNSAT;
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<BddNode> parts) {
+        BddNode current = base.get();
+        BddNode context = current == null ? bdd.TRUE : current;
+        Map<String, String> model = bdd.findModel(bdd.and(context, and(parts)));
+        if (model != null) {
+            return CheckResult.sat(model);
+        }
+        // Deletion-based core: a part is dropped if the remaining ones stay unsatisfiable without it.
+        BitSet core = new BitSet(parts.size());
+        core.set(0, parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            core.clear(i);
+            List<BddNode> remaining = new ArrayList<>();
+            core.stream().forEach(j -> remaining.add(parts.get(j)));
+            if (check(bdd.and(context, and(remaining)))) {
+                core.set(i);
+            }
+        }
+        return CheckResult.unsat(core);
+    }
+
+    @Override
+    public long exprId(BddNode expr) {
+        return expr.getId();
+    }
+
+    // The BDD tables are shared safely between threads, so workers can use this very instance.
+    @Override
+    public EncodedAPI<BddNode> fork() {
+        return this;
+    }
+
+    @Override
+    public Boolean greaterThan(BddNode lhs, BddNode rhs) {
+        return check(bdd.and(lhs, bdd.not(rhs))) && !check(bdd.and(bdd.not(lhs), rhs));
+    }
+
+    @Override
+    public Boolean greaterThan(VarKey key, String lhs, String rhs) {
+        if (rhs.equals("*")) {
+            return false;
+        }
+        if (lhs.equals("*")) {
+            return true;
+        }
+        if (lhs.equals(rhs)) {
+            return false;
+        }
+
+        switch (key) {
+            case AWS_SOURCE_IP -> {
+                return IpRangeSet.greaterThan(lhs, rhs);
+            }
+            default -> {
+                Boolean decided = PatternContainment.greaterThan(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
+                return greaterThan(mkReMatch("tmp", lhs), mkReMatch("tmp", rhs));
+            }
+        }
+    }
+
+    @Override
+    public Boolean greaterEquals(BddNode lhs, BddNode rhs) {
+        return !check(bdd.and(bdd.not(lhs), rhs));
+    }
+
+    @Override
+    public Boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        if (lhs.equals(rhs)) {
+            return true;
+        }
+        if (rhs.equals("*")) {
+            return false;
+        }
+        if (lhs.equals("*")) {
+            return true;
+        }
+
+        switch (key) {
+            case AWS_SOURCE_IP -> {
+                return IpRangeSet.greaterEquals(lhs, rhs);
+            }
+            default -> {
+                Boolean decided = PatternContainment.greaterEquals(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
+                return greaterEquals(mkReMatch("tmp", lhs), mkReMatch("tmp", rhs));
+            }
+        }
+    }
+}
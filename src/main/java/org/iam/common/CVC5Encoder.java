@@ -1,12 +1,16 @@
 package org.iam.common;
 
 import io.github.cvc5.*;
+import org.iam.common.apis.CheckResult;
 import org.iam.common.apis.EncodedAPI;
 import org.iam.common.apis.GrammarlyAPI;
+import org.iam.common.apis.SolverLimits;
+import org.iam.common.apis.SolverStatus;
 import org.iam.common.vars.VarKey;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,15 +18,51 @@ import java.util.Map;
 public class CVC5Encoder implements EncodedAPI<Term> {
 
     private final TermManager tm;
+    private final SolverLimits limits;
     private final Solver solver;
+    private final Solver baseSolver;
     private final Map<String, Term> variableCache;
+    // Intern tables: the same few patterns are encoded again in every mining round.
+    private final Map<String, Term> regexes = new HashMap<>();
+    private final Map<String, Map<String, Term>> reMatches = new HashMap<>();
+    private final Map<String, Map<String, Term>> ipMatches = new HashMap<>();
+    private boolean hasBase = false;
+    private boolean closed = false;
 
     public CVC5Encoder() {
+        this(SolverLimits.NONE);
+    }
+
+    public CVC5Encoder(SolverLimits limits) {
         this.tm = new TermManager();
+        this.limits = limits;
         this.solver = new Solver(tm);
+        // The base solver keeps the session formula and answers queries via check-sat-assuming.
+        this.baseSolver = new Solver(tm);
+        this.baseSolver.setOption("incremental", "true");
+        this.baseSolver.setOption("produce-models", "true");
+        this.baseSolver.setOption("produce-unsat-assumptions", "true");
+        applyLimits(this.solver);
+        applyLimits(this.baseSolver);
         this.variableCache = new HashMap<>();
     }
 
+    private void applyLimits(Solver target) {
+        if (limits.timeoutMillis() > 0) {
+            target.setOption("tlimit-per", String.valueOf(limits.timeoutMillis()));
+        }
+        if (limits.resourceLimit() > 0) {
+            target.setOption("rlimit-per", String.valueOf(limits.resourceLimit()));
+        }
+    }
+
+    private static SolverStatus toStatus(Result result) {
+        if (result.isSat()) {
+            return SolverStatus.SAT;
+        }
+        return result.isUnsat() ? SolverStatus.UNSAT : SolverStatus.UNKNOWN;
+    }
+
     @Override
     public Term mkTrue() {
         return tm.mkTrue();
@@ -38,7 +78,11 @@ public class CVC5Encoder implements EncodedAPI<Term> {
         if (regex.equals("*")) {
             return mkTrue();
         }
+        return reMatches.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(regex, r -> encodeReMatch(key, r));
+    }
 
+    private Term encodeReMatch(String key, String regex) {
         // CVC5 mkConst creates a fresh constant every time.
         // We use a cache to ensure the same key maps to the same Term object.
         Term keyConst = variableCache.computeIfAbsent(key, k -> tm.mkConst(tm.getStringSort(), k));
@@ -91,6 +135,11 @@ public class CVC5Encoder implements EncodedAPI<Term> {
 
     @Override
     public Term mkIpMatch(String key, String cidr) {
+        return ipMatches.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(cidr, c -> encodeIpMatch(key, c));
+    }
+
+    private Term encodeIpMatch(String key, String cidr) {
         try {
             String[] parts = cidr.split("/");
             String ipPart = parts[0];
@@ -134,6 +183,10 @@ public class CVC5Encoder implements EncodedAPI<Term> {
     }
 
     private Term mkRegex(String regex) {
+        return regexes.computeIfAbsent(regex, this::encodeRegex);
+    }
+
+    private Term encodeRegex(String regex) {
         if (!regex.contains("?") && !regex.contains("*")) {
             return tm.mkTerm(Kind.STRING_TO_REGEXP, tm.mkString(regex));
         }
@@ -216,11 +269,14 @@ public class CVC5Encoder implements EncodedAPI<Term> {
 
     @Override
     public Boolean check(Term expr) {
+        return checkStatus(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatus(Term expr) {
         solver.resetAssertions();
         solver.assertFormula(expr);
-        Result result = solver.checkSat();
-        assert !result.isUnknown() : "Unable to solve the problem";
-        return result.isSat();
+        return toStatus(solver.checkSat());
     }
 
     @Override
@@ -229,6 +285,97 @@ public class CVC5Encoder implements EncodedAPI<Term> {
         return check(intersectionExpr);
     }
 
+    @Override
+    public void setBase(Term expr) {
+        baseSolver.resetAssertions();
+        baseSolver.assertFormula(expr);
+        hasBase = true;
+    }
+
+    @Override
+    public void clearBase() {
+        baseSolver.resetAssertions();
+        hasBase = false;
+    }
+
+    @Override
+    public Boolean checkWithBase(Term expr) {
+        return checkStatusWithBase(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(Term expr) {
+        if (!hasBase) {
+            return checkStatus(expr);
+        }
+        return toStatus(baseSolver.checkSatAssuming(expr));
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<Term> parts) {
+        // The parts are the assumptions of the query, so the unsat assumptions are the core.
+        // Without a base the base solver holds no assertions, so it answers both cases.
+        Term[] assumptions = parts.toArray(new Term[0]);
+        return switch (toStatus(baseSolver.checkSatAssuming(assumptions))) {
+            case SAT -> CheckResult.sat(modelValues());
+            case UNSAT -> CheckResult.unsat(coreIndices(baseSolver.getUnsatAssumptions(), assumptions));
+            default -> CheckResult.unknown();
+        };
+    }
+
+    private Map<String, String> modelValues() {
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<String, Term> entry : variableCache.entrySet()) {
+            Term value = baseSolver.getValue(entry.getValue());
+            String key = entry.getKey();
+            try {
+                if (key.endsWith("_bv")) {
+                    values.put(CheckResult.ipVariable(key.substring(0, key.length() - "_bv".length())),
+                            IpRangeSet.longToIp(Long.parseLong(value.getBitVectorValue(10))));
+                } else {
+                    values.put(key, value.getStringValue());
+                }
+            } catch (CVC5ApiException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return values;
+    }
+
+    private static BitSet coreIndices(Term[] core, Term[] assumptions) {
+        BitSet indices = new BitSet(assumptions.length);
+        for (Term term : core) {
+            for (int i = 0; i < assumptions.length; i++) {
+                if (assumptions[i].equals(term)) {
+                    indices.set(i);
+                }
+            }
+        }
+        return indices;
+    }
+
+    @Override
+    public long exprId(Term expr) {
+        return expr.getId();
+    }
+
+    @Override
+    public EncodedAPI<Term> fork() {
+        return new CVC5Encoder(limits);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // The solvers refer to the term manager, so they go first.
+        solver.deletePointer();
+        baseSolver.deletePointer();
+        tm.deletePointer();
+    }
+
     @Override
     public Boolean greaterThan(Term lhs, Term rhs) {
         Term containsExpr = tm.mkTerm(Kind.AND, lhs, tm.mkTerm(Kind.NOT, rhs));
@@ -250,11 +397,13 @@ public class CVC5Encoder implements EncodedAPI<Term> {
 
         switch (key) {
             case AWS_SOURCE_IP -> {
-                Term lhsExpr = mkIpMatch("tmp", lhs);
-                Term rhsExpr = mkIpMatch("tmp", rhs);
-                return greaterThan(lhsExpr, rhsExpr);
+                return IpRangeSet.greaterThan(lhs, rhs);
             }
             default -> {
+                Boolean decided = PatternContainment.greaterThan(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
                 Term lhsExpr = mkReMatch("tmp", lhs);
                 Term rhsExpr = mkReMatch("tmp", rhs);
                 return greaterThan(lhsExpr, rhsExpr);
@@ -282,11 +431,13 @@ public class CVC5Encoder implements EncodedAPI<Term> {
 
         switch (key) {
             case AWS_SOURCE_IP -> {
-                Term lhsExpr = mkIpMatch("tmp", lhs);
-                Term rhsExpr = mkIpMatch("tmp", rhs);
-                return greaterEquals(lhsExpr, rhsExpr);
+                return IpRangeSet.greaterEquals(lhs, rhs);
             }
             default -> {
+                Boolean decided = PatternContainment.greaterEquals(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
                 Term lhsExpr = mkReMatch("tmp", lhs);
                 Term rhsExpr = mkReMatch("tmp", rhs);
                 return greaterEquals(lhsExpr, rhsExpr);
@@ -0,0 +1,159 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the decisions of the wrapped encoder, keyed by the structural identity (EncodedAPI.exprId)
+ * of the queried expressions and, for checkWithBase, of the current base. At most maxEntries decisions
+ * are kept, the least recently used one is evicted first. Every entry holds on to its expressions, so
+ * their ids cannot be reused by the solver for different expressions while the entry is cached.
+ * Forks keep caches of their own but count hits and misses into the same counters, so these cover all
+ * workers.
+ */
+public class CachingEncoder<T> extends ForwardingEncoder<T> {
+    private static final long NO_BASE = -1;
+
+    private enum QueryType {
+        CHECK,
+        CHECK_WITH_BASE,
+        CHECK_PARTS_WITH_BASE
+    }
+
+    private record Query(QueryType type, long base, long lhs, long rhs, List<Long> others) {
+    }
+
+    private record Decision(Object result, Object pinned) {
+    }
+
+    private final int maxEntries;
+    private final Map<Query, Decision> cache;
+    private T base = null;
+    private long baseId = NO_BASE;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public CachingEncoder(EncodedAPI<T> delegate, int maxEntries) {
+        this(delegate, maxEntries, new LongAdder(), new LongAdder());
+    }
+
+    private CachingEncoder(EncodedAPI<T> delegate, int maxEntries, LongAdder hits, LongAdder misses) {
+        super(delegate);
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query, Decision> eldest) {
+                return size() > CachingEncoder.this.maxEntries;
+            }
+        };
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public Boolean check(T expr) {
+        return checkStatus(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatus(T expr) {
+        Query query = new Query(QueryType.CHECK, NO_BASE, exprId(expr), NO_BASE, null);
+        return lookup(query, expr, () -> delegate.checkStatus(expr));
+    }
+
+    @Override
+    public Boolean checkWithBase(T expr) {
+        return checkStatusWithBase(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(T expr) {
+        if (baseId == NO_BASE) {
+            return checkStatus(expr);
+        }
+        Query query = new Query(QueryType.CHECK_WITH_BASE, baseId, exprId(expr), NO_BASE, null);
+        return lookup(query, List.of(base, expr), () -> delegate.checkStatusWithBase(expr));
+    }
+
+    // The Boolean queries below may hide an UNKNOWN, so they are answered by cached status checks instead.
+    @Override
+    public Boolean checkIntersection(List<T> exprs) {
+        return checkStatus(and(exprs)) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<T> parts) {
+        List<Long> ids = parts.stream().map(this::exprId).toList();
+        Query query = new Query(QueryType.CHECK_PARTS_WITH_BASE, baseId, NO_BASE, NO_BASE, ids);
+        List<T> pinned = new ArrayList<>(parts);
+        pinned.add(base);
+        return lookup(query, pinned, () -> delegate.checkPartsWithBase(parts));
+    }
+
+    @Override
+    public Boolean greaterThan(T lhs, T rhs) {
+        return checkStatus(and(List.of(lhs, not(rhs)))) != SolverStatus.UNSAT && greaterEquals(lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(T lhs, T rhs) {
+        return checkStatus(and(List.of(not(lhs), rhs))) == SolverStatus.UNSAT;
+    }
+
+    @Override
+    public void setBase(T expr) {
+        delegate.setBase(expr);
+        base = expr;
+        baseId = exprId(expr);
+    }
+
+    @Override
+    public void clearBase() {
+        delegate.clearBase();
+        base = null;
+        baseId = NO_BASE;
+    }
+
+    @Override
+    public EncodedAPI<T> fork() {
+        // Expression ids are only meaningful within one context, so a fork gets a cache of its own.
+        return new CachingEncoder<>(delegate.fork(), maxEntries, hits, misses);
+    }
+
+    // UNKNOWN is not cached: the solver may well decide the query on a later attempt.
+    @SuppressWarnings("unchecked")
+    private <R> R lookup(Query query, Object pinned, Supplier<R> solve) {
+        Decision decision = cache.get(query);
+        if (decision != null) {
+            hits.increment();
+            return (R) decision.result();
+        }
+        misses.increment();
+        R result = solve.get();
+        if (result != SolverStatus.UNKNOWN
+                && !(result instanceof CheckResult checkResult && checkResult.status() == SolverStatus.UNKNOWN)) {
+            cache.put(query, new Decision(result, pinned));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.vars.VarKey;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the checks made through the wrapped encoder, whatever answers them in the end (a cache, a
+ * syntactic shortcut or the solver). Forks count into the same counter, so it covers all workers.
+ */
+public class CountingEncoder<T> extends ForwardingEncoder<T> {
+    private final LongAdder checks;
+
+    public CountingEncoder(EncodedAPI<T> delegate, LongAdder checks) {
+        super(delegate);
+        this.checks = checks;
+    }
+
+    @Override
+    public Boolean check(T expr) {
+        checks.increment();
+        return delegate.check(expr);
+    }
+
+    @Override
+    public SolverStatus checkStatus(T expr) {
+        checks.increment();
+        return delegate.checkStatus(expr);
+    }
+
+    @Override
+    public Boolean checkIntersection(List<T> exprs) {
+        checks.increment();
+        return delegate.checkIntersection(exprs);
+    }
+
+    @Override
+    public Boolean greaterThan(T lhs, T rhs) {
+        checks.increment();
+        return delegate.greaterThan(lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(T lhs, T rhs) {
+        checks.increment();
+        return delegate.greaterEquals(lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterThan(VarKey key, String lhs, String rhs) {
+        checks.increment();
+        return delegate.greaterThan(key, lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        checks.increment();
+        return delegate.greaterEquals(key, lhs, rhs);
+    }
+
+    @Override
+    public Boolean checkWithBase(T expr) {
+        checks.increment();
+        return delegate.checkWithBase(expr);
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(T expr) {
+        checks.increment();
+        return delegate.checkStatusWithBase(expr);
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<T> parts) {
+        checks.increment();
+        return delegate.checkPartsWithBase(parts);
+    }
+
+    @Override
+    public EncodedAPI<T> fork() {
+        return new CountingEncoder<>(delegate.fork(), checks);
+    }
+}
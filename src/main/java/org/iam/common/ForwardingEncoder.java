@@ -0,0 +1,172 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.GrammarlyAPI;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.vars.VarKey;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class of encoder decorators: forwards every operation to the wrapped encoder.
+ * Objects passed as GrammarlyAPI are encoded through the decorator itself, so their encoding caches
+ * are owned by the encoder the caller actually uses, and the varargs variants go through the
+ * overridable List variants.
+ */
+public abstract class ForwardingEncoder<T> implements EncodedAPI<T> {
+    protected final EncodedAPI<T> delegate;
+
+    protected ForwardingEncoder(EncodedAPI<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    public EncodedAPI<T> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public T mkFalse() {
+        return delegate.mkFalse();
+    }
+
+    @Override
+    public T mkTrue() {
+        return delegate.mkTrue();
+    }
+
+    @Override
+    public T mkReMatch(String key, String regex) {
+        return delegate.mkReMatch(key, regex);
+    }
+
+    @Override
+    public T mkStringEq(String key, String value) {
+        return delegate.mkStringEq(key, value);
+    }
+
+    @Override
+    public T mkStringEqIgnoreCase(String key, String value) {
+        return delegate.mkStringEqIgnoreCase(key, value);
+    }
+
+    @Override
+    public T mkIpMatch(String key, String cidr) {
+        return delegate.mkIpMatch(key, cidr);
+    }
+
+    @Override
+    public T and(List<T> exprs) {
+        return delegate.and(exprs);
+    }
+
+    @SafeVarargs
+    @Override
+    public final T and(T... exprs) {
+        return and(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final T and(GrammarlyAPI<T>... exprs) {
+        return and(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public T or(List<T> exprs) {
+        return delegate.or(exprs);
+    }
+
+    @SafeVarargs
+    @Override
+    public final T or(T... exprs) {
+        return or(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final T or(GrammarlyAPI<T>... exprs) {
+        return or(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public T not(T expr) {
+        return delegate.not(expr);
+    }
+
+    @Override
+    public T not(GrammarlyAPI<T> expr) {
+        return not(expr.encode(this));
+    }
+
+    @Override
+    public Boolean check(T expr) {
+        return delegate.check(expr);
+    }
+
+    @Override
+    public SolverStatus checkStatus(T expr) {
+        return delegate.checkStatus(expr);
+    }
+
+    @Override
+    public Boolean checkIntersection(List<T> exprs) {
+        return delegate.checkIntersection(exprs);
+    }
+
+    @Override
+    public Boolean greaterThan(T lhs, T rhs) {
+        return delegate.greaterThan(lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(T lhs, T rhs) {
+        return delegate.greaterEquals(lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterThan(VarKey key, String lhs, String rhs) {
+        return delegate.greaterThan(key, lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        return delegate.greaterEquals(key, lhs, rhs);
+    }
+
+    @Override
+    public void setBase(T expr) {
+        delegate.setBase(expr);
+    }
+
+    @Override
+    public void clearBase() {
+        delegate.clearBase();
+    }
+
+    @Override
+    public Boolean checkWithBase(T expr) {
+        return delegate.checkWithBase(expr);
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(T expr) {
+        return delegate.checkStatusWithBase(expr);
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<T> parts) {
+        return delegate.checkPartsWithBase(parts);
+    }
+
+    @Override
+    public long exprId(T expr) {
+        return delegate.exprId(expr);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
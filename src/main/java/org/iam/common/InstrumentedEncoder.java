@@ -0,0 +1,160 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.vars.VarKey;
+import org.iam.utils.SolverMetrics;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records count, latency and outcome of every call into the wrapped encoder in SolverMetrics.
+ * It is only put in place when instrumentation is requested, so an uninstrumented run pays nothing.
+ */
+public class InstrumentedEncoder<T> extends ForwardingEncoder<T> {
+    private final SolverMetrics metrics;
+
+    public InstrumentedEncoder(EncodedAPI<T> delegate, SolverMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <R> R timed(String method, Supplier<R> call) {
+        long startTime = System.nanoTime();
+        R result = call.get();
+        metrics.record(method, System.nanoTime() - startTime);
+        return result;
+    }
+
+    private SolverStatus timedStatus(String method, Supplier<SolverStatus> call) {
+        long startTime = System.nanoTime();
+        SolverStatus status = call.get();
+        metrics.record(method, System.nanoTime() - startTime, status);
+        return status;
+    }
+
+    // Boolean checks count UNKNOWN as true, so their outcome is recorded as SAT/UNSAT only.
+    private Boolean timedCheck(String method, Supplier<Boolean> call) {
+        long startTime = System.nanoTime();
+        Boolean result = call.get();
+        metrics.record(method, System.nanoTime() - startTime, result ? SolverStatus.SAT : SolverStatus.UNSAT);
+        return result;
+    }
+
+    @Override
+    public T mkFalse() {
+        return timed("mkFalse", delegate::mkFalse);
+    }
+
+    @Override
+    public T mkTrue() {
+        return timed("mkTrue", delegate::mkTrue);
+    }
+
+    @Override
+    public T mkReMatch(String key, String regex) {
+        return timed("mkReMatch", () -> delegate.mkReMatch(key, regex));
+    }
+
+    @Override
+    public T mkStringEq(String key, String value) {
+        return timed("mkStringEq", () -> delegate.mkStringEq(key, value));
+    }
+
+    @Override
+    public T mkStringEqIgnoreCase(String key, String value) {
+        return timed("mkStringEqIgnoreCase", () -> delegate.mkStringEqIgnoreCase(key, value));
+    }
+
+    @Override
+    public T mkIpMatch(String key, String cidr) {
+        return timed("mkIpMatch", () -> delegate.mkIpMatch(key, cidr));
+    }
+
+    @Override
+    public T and(List<T> exprs) {
+        return timed("and", () -> delegate.and(exprs));
+    }
+
+    @Override
+    public T or(List<T> exprs) {
+        return timed("or", () -> delegate.or(exprs));
+    }
+
+    @Override
+    public T not(T expr) {
+        return timed("not", () -> delegate.not(expr));
+    }
+
+    @Override
+    public Boolean check(T expr) {
+        return timedCheck("check", () -> delegate.check(expr));
+    }
+
+    @Override
+    public SolverStatus checkStatus(T expr) {
+        return timedStatus("checkStatus", () -> delegate.checkStatus(expr));
+    }
+
+    @Override
+    public Boolean checkIntersection(List<T> exprs) {
+        return timedCheck("checkIntersection", () -> delegate.checkIntersection(exprs));
+    }
+
+    @Override
+    public Boolean greaterThan(T lhs, T rhs) {
+        return timedCheck("greaterThan", () -> delegate.greaterThan(lhs, rhs));
+    }
+
+    @Override
+    public Boolean greaterEquals(T lhs, T rhs) {
+        return timedCheck("greaterEquals", () -> delegate.greaterEquals(lhs, rhs));
+    }
+
+    @Override
+    public Boolean greaterThan(VarKey key, String lhs, String rhs) {
+        return timedCheck("greaterThan(key)", () -> delegate.greaterThan(key, lhs, rhs));
+    }
+
+    @Override
+    public Boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        return timedCheck("greaterEquals(key)", () -> delegate.greaterEquals(key, lhs, rhs));
+    }
+
+    @Override
+    public void setBase(T expr) {
+        timed("setBase", () -> {
+            delegate.setBase(expr);
+            return null;
+        });
+    }
+
+    @Override
+    public Boolean checkWithBase(T expr) {
+        return timedCheck("checkWithBase", () -> delegate.checkWithBase(expr));
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(T expr) {
+        return timedStatus("checkStatusWithBase", () -> delegate.checkStatusWithBase(expr));
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<T> parts) {
+        long startTime = System.nanoTime();
+        CheckResult result = delegate.checkPartsWithBase(parts);
+        metrics.record("checkPartsWithBase", System.nanoTime() - startTime, result.status());
+        return result;
+    }
+
+    @Override
+    public EncodedAPI<T> fork() {
+        return new InstrumentedEncoder<>(delegate.fork(), metrics);
+    }
+}
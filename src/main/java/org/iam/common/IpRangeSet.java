@@ -0,0 +1,249 @@
+package org.iam.common;
+
+import java.util.*;
+
+/**
+ * An immutable set of IPv4 addresses held as sorted, disjoint and non-adjacent closed intervals.
+ * It answers containment, intersection and emptiness of IpAddress / NotIpAddress values without
+ * going through the bit-vector encoding of EncodedAPI.mkIpMatch.
+ */
+public final class IpRangeSet {
+    private static final long MAX_ADDRESS = 0xFFFFFFFFL;
+
+    public static final IpRangeSet EMPTY = new IpRangeSet(new long[0], new long[0]);
+    public static final IpRangeSet ALL = new IpRangeSet(new long[]{0}, new long[]{MAX_ADDRESS});
+
+    private final long[] starts;
+    private final long[] ends;
+
+    private IpRangeSet(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Parses a CIDR block ("10.0.0.0/8") or a single address ("10.0.0.1").
+     * Malformed values yield the empty set, in line with mkIpMatch encoding them as false.
+     */
+    public static IpRangeSet ofCidr(String cidr) {
+        try {
+            String[] parts = cidr.split("/");
+            int prefixLength = parts.length > 1 ? Integer.parseInt(parts[1]) : 32;
+            if (parts.length > 2 || prefixLength < 0 || prefixLength > 32) {
+                return EMPTY;
+            }
+            long maskLong = (MAX_ADDRESS << (32 - prefixLength)) & MAX_ADDRESS;
+            long networkLong = ipToLong(parts[0]) & maskLong;
+            return new IpRangeSet(new long[]{networkLong}, new long[]{networkLong | (~maskLong & MAX_ADDRESS)});
+        } catch (IllegalArgumentException e) {
+            return EMPTY;
+        }
+    }
+
+    /**
+     * The addresses matched by an IpAddress condition over the given values.
+     */
+    public static IpRangeSet ofCidrs(Collection<String> cidrs) {
+        IpRangeSet result = EMPTY;
+        for (String cidr : cidrs) {
+            result = result.union(ofCidr(cidr));
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the CIDR lhs contains every address of the CIDR rhs.
+     */
+    public static boolean greaterEquals(String lhs, String rhs) {
+        return ofCidr(lhs).contains(ofCidr(rhs));
+    }
+
+    /**
+     * Checks whether the CIDR lhs strictly contains the CIDR rhs.
+     */
+    public static boolean greaterThan(String lhs, String rhs) {
+        IpRangeSet lhsSet = ofCidr(lhs);
+        IpRangeSet rhsSet = ofCidr(rhs);
+        return lhsSet.contains(rhsSet) && !lhsSet.equals(rhsSet);
+    }
+
+    public static long ipToLong(String ip) {
+        String[] octets = ip.split("\\.");
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Invalid IP address: " + ip);
+        }
+        long result = 0;
+        for (String octet : octets) {
+            int value = Integer.parseInt(octet);
+            if (value < 0 || value > 255) {
+                throw new IllegalArgumentException("Invalid IP address: " + ip);
+            }
+            result = (result << 8) | value;
+        }
+        return result;
+    }
+
+    public static String longToIp(long ip) {
+        return ((ip >> 24) & 0xFF) + "." + ((ip >> 16) & 0xFF) + "." + ((ip >> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    public boolean contains(long ip) {
+        int index = floorIndex(ip);
+        return index >= 0 && ip <= ends[index];
+    }
+
+    /**
+     * Checks whether every address of other is in this set.
+     */
+    public boolean contains(IpRangeSet other) {
+        for (int i = 0; i < other.starts.length; i++) {
+            int index = floorIndex(other.starts[i]);
+            if (index < 0 || other.ends[i] > ends[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean intersects(IpRangeSet other) {
+        int i = 0;
+        int j = 0;
+        while (i < starts.length && j < other.starts.length) {
+            if (ends[i] < other.starts[j]) {
+                i++;
+            } else if (other.ends[j] < starts[i]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public IpRangeSet union(IpRangeSet other) {
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+
+        Builder builder = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < starts.length || j < other.starts.length) {
+            if (j >= other.starts.length || (i < starts.length && starts[i] <= other.starts[j])) {
+                builder.add(starts[i], ends[i]);
+                i++;
+            } else {
+                builder.add(other.starts[j], other.ends[j]);
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    public IpRangeSet intersect(IpRangeSet other) {
+        Builder builder = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < starts.length && j < other.starts.length) {
+            long start = Math.max(starts[i], other.starts[j]);
+            long end = Math.min(ends[i], other.ends[j]);
+            if (start <= end) {
+                builder.add(start, end);
+            }
+            if (ends[i] < other.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * The addresses matched by a NotIpAddress condition over the values of this set.
+     */
+    public IpRangeSet complement() {
+        Builder builder = new Builder();
+        long next = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] > next) {
+                builder.add(next, starts[i] - 1);
+            }
+            next = ends[i] + 1;
+        }
+        if (next <= MAX_ADDRESS) {
+            builder.add(next, MAX_ADDRESS);
+        }
+        return builder.build();
+    }
+
+    public IpRangeSet minus(IpRangeSet other) {
+        return intersect(other.complement());
+    }
+
+    /**
+     * The lowest address in the set, or -1 if it is empty.
+     */
+    public long first() {
+        return isEmpty() ? -1 : starts[0];
+    }
+
+    // Index of the last interval starting at or before ip, or -1.
+    private int floorIndex(long ip) {
+        int index = Arrays.binarySearch(starts, ip);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IpRangeSet that)) return false;
+        return Arrays.equals(starts, that.starts) && Arrays.equals(ends, that.ends);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "IpRangeSet{", "}");
+        for (int i = 0; i < starts.length; i++) {
+            joiner.add(longToIp(starts[i]) + "-" + longToIp(ends[i]));
+        }
+        return joiner.toString();
+    }
+
+    // Collects intervals in ascending start order, merging overlapping and adjacent ones.
+    private static class Builder {
+        private final List<long[]> intervals = new ArrayList<>();
+
+        void add(long start, long end) {
+            if (!intervals.isEmpty()) {
+                long[] last = intervals.get(intervals.size() - 1);
+                if (start <= last[1] + 1) {
+                    last[1] = Math.max(last[1], end);
+                    return;
+                }
+            }
+            intervals.add(new long[]{start, end});
+        }
+
+        IpRangeSet build() {
+            if (intervals.isEmpty()) {
+                return EMPTY;
+            }
+            long[] starts = new long[intervals.size()];
+            long[] ends = new long[intervals.size()];
+            for (int i = 0; i < intervals.size(); i++) {
+                starts[i] = intervals.get(i)[0];
+                ends[i] = intervals.get(i)[1];
+            }
+            return new IpRangeSet(starts, ends);
+        }
+    }
+}
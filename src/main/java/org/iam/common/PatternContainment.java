@@ -0,0 +1,205 @@
+package org.iam.common;
+
+import java.util.*;
+
+/**
+ * Decides containment between IAM wildcard patterns without a solver.
+ * The semantics follow EncodedAPI.mkReMatch: "*" matches every string, a bare "?" matches every
+ * non-empty string, and inside a longer pattern '*' matches any (possibly empty) substring and
+ * '?' exactly one character.
+ */
+public final class PatternContainment {
+    // Upper bound of explored product states before the decision is handed back to the solver.
+    private static final int MAX_STATES = 100_000;
+
+    private static final char ANY = '?';
+    private static final char STAR = '*';
+
+    private PatternContainment() {
+    }
+
+    /**
+     * Checks whether lhs >= rhs, i.e. every string matched by rhs is also matched by lhs.
+     *
+     * @return true if lhs matches every string rhs matches, false if not,
+     * or null if the state budget was exhausted and the caller should fall back to the solver.
+     */
+    public static Boolean greaterEquals(String lhs, String rhs) {
+        if (lhs.equals(rhs) || lhs.equals("*")) {
+            return true;
+        }
+        if (rhs.equals("*")) {
+            return false;
+        }
+        char[] lhsTokens = tokenize(lhs);
+        char[] rhsTokens = tokenize(rhs);
+        if (!hasWildcard(rhsTokens)) {
+            return matches(lhsTokens, rhs);
+        }
+        if (!hasWildcard(lhsTokens)) {
+            // A wildcard pattern matches infinitely many strings, a literal exactly one.
+            return false;
+        }
+        return includes(lhsTokens, rhsTokens);
+    }
+
+    /**
+     * Checks whether lhs > rhs, i.e. lhs >= rhs but not rhs >= lhs.
+     *
+     * @return the decision, or null if either direction was inconclusive.
+     */
+    public static Boolean greaterThan(String lhs, String rhs) {
+        Boolean geq = greaterEquals(lhs, rhs);
+        if (geq == null) {
+            return null;
+        }
+        if (!geq) {
+            return false;
+        }
+        Boolean leq = greaterEquals(rhs, lhs);
+        return leq == null ? null : !leq;
+    }
+
+    /**
+     * Checks whether a concrete string is matched by the pattern.
+     */
+    public static boolean matches(String pattern, String value) {
+        return matches(tokenize(pattern), value);
+    }
+
+    private static char[] tokenize(String pattern) {
+        if (pattern.equals("?")) {
+            // Special-cased by the encoders as "any non-empty string".
+            return new char[]{ANY, STAR};
+        }
+        return pattern.toCharArray();
+    }
+
+    private static boolean hasWildcard(char[] tokens) {
+        for (char c : tokens) {
+            if (c == ANY || c == STAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(char[] tokens, String value) {
+        BitSet current = closure(tokens, singleton(0));
+        for (int i = 0; i < value.length() && !current.isEmpty(); i++) {
+            current = step(tokens, current, value.charAt(i));
+        }
+        return current.get(tokens.length);
+    }
+
+    /**
+     * Language inclusion L(rhs) ⊆ L(lhs): explore rhs as an NFA in lockstep with the subset
+     * construction of lhs, over the characters mentioned by either pattern plus one character
+     * that neither mentions.
+     */
+    private static Boolean includes(char[] lhs, char[] rhs) {
+        List<Character> alphabet = alphabet(lhs, rhs);
+
+        Deque<State> queue = new ArrayDeque<>();
+        Set<State> visited = new HashSet<>();
+        BitSet lhsStart = closure(lhs, singleton(0));
+        for (int pos : positions(closure(rhs, singleton(0)))) {
+            State start = new State(pos, lhsStart);
+            if (visited.add(start)) {
+                queue.add(start);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            State state = queue.poll();
+            if (state.rhsPos == rhs.length && !state.lhsSet.get(lhs.length)) {
+                return false;
+            }
+            if (state.rhsPos == rhs.length) {
+                continue;
+            }
+            for (char c : alphabet) {
+                BitSet rhsNext = closure(rhs, stepOne(rhs, state.rhsPos, c));
+                if (rhsNext.isEmpty()) {
+                    continue;
+                }
+                BitSet lhsNext = step(lhs, state.lhsSet, c);
+                if (lhsNext.isEmpty()) {
+                    // Every rhs position can still reach acceptance, lhs no longer can.
+                    return false;
+                }
+                for (int pos : positions(rhsNext)) {
+                    State next = new State(pos, lhsNext);
+                    if (visited.add(next)) {
+                        if (visited.size() > MAX_STATES) {
+                            return null;
+                        }
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static List<Character> alphabet(char[] lhs, char[] rhs) {
+        Set<Character> chars = new LinkedHashSet<>();
+        for (char c : lhs) {
+            if (c != ANY && c != STAR) chars.add(c);
+        }
+        for (char c : rhs) {
+            if (c != ANY && c != STAR) chars.add(c);
+        }
+        char other = 0;
+        while (chars.contains(other) || other == ANY || other == STAR) {
+            other++;
+        }
+        List<Character> alphabet = new ArrayList<>(chars);
+        alphabet.add(other);
+        return alphabet;
+    }
+
+    private static BitSet singleton(int pos) {
+        BitSet set = new BitSet();
+        set.set(pos);
+        return set;
+    }
+
+    private static BitSet closure(char[] tokens, BitSet positions) {
+        BitSet result = (BitSet) positions.clone();
+        for (int i = result.nextSetBit(0); i >= 0 && i < tokens.length; i = result.nextSetBit(i + 1)) {
+            if (tokens[i] == STAR) {
+                result.set(i + 1);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet stepOne(char[] tokens, int pos, char c) {
+        BitSet next = new BitSet();
+        if (pos < tokens.length) {
+            char token = tokens[pos];
+            if (token == STAR) {
+                next.set(pos);
+            } else if (token == ANY || token == c) {
+                next.set(pos + 1);
+            }
+        }
+        return next;
+    }
+
+    private static BitSet step(char[] tokens, BitSet positions, char c) {
+        BitSet next = new BitSet();
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            next.or(stepOne(tokens, i, c));
+        }
+        return closure(tokens, next);
+    }
+
+    private static int[] positions(BitSet set) {
+        return set.stream().toArray();
+    }
+
+    private record State(int rhsPos, BitSet lhsSet) {
+    }
+}
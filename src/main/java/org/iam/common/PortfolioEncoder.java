@@ -0,0 +1,378 @@
+package org.iam.common;
+
+import com.microsoft.z3.BoolExpr;
+import io.github.cvc5.Term;
+import org.iam.common.PortfolioStats.Backend;
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.GrammarlyAPI;
+import org.iam.common.apis.SolverLimits;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.vars.VarKey;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Encodes every formula for Z3 and CVC5 and races both solvers on each query; the first answer wins.
+ * A losing Z3 is interrupted. CVC5 cannot be interrupted, so a losing CVC5 keeps running and the
+ * encoder continues with Z3 alone until it has finished. CVC5 parts of formulas built meanwhile and a
+ * base set meanwhile are caught up on the first query after that. Boolean queries race the statuses
+ * of their formulas, so a backend that gave up never wins one.
+ * Wins are recorded per query class in PortfolioStats, which may pin a class to one backend.
+ */
+public class PortfolioEncoder implements EncodedAPI<PortfolioExpr> {
+    private final Z3Encoder z3;
+    private final CVC5Encoder cvc5;
+    private final SolverLimits limits;
+    private final PortfolioStats stats;
+    private final ExecutorService executor;
+    // Whether a raced CVC5 query is still running; the last one to finish with CVC5 (close or that query)
+    // releases it. Written under cvc5Lock.
+    private final Object cvc5Lock = new Object();
+    private volatile boolean cvc5Busy = false;
+    private boolean closed = false;
+    // Whether the base of the CVC5 solver matches the logical base; it cannot be changed while CVC5 is busy.
+    private boolean cvc5BaseValid = true;
+    private PortfolioExpr base = null;
+
+    public PortfolioEncoder(PortfolioStats stats) {
+        this(stats, SolverLimits.NONE);
+    }
+
+    public PortfolioEncoder(PortfolioStats stats, SolverLimits limits) {
+        this.z3 = new Z3Encoder(limits);
+        this.cvc5 = new CVC5Encoder(limits);
+        this.limits = limits;
+        this.stats = stats;
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PortfolioStats getStats() {
+        return stats;
+    }
+
+    private boolean cvc5Available() {
+        return !cvc5Busy;
+    }
+
+    /**
+     * Whether CVC5 can take a query; if so, a base set while it was busy is asserted first.
+     */
+    private boolean cvc5Ready() {
+        if (!cvc5Available()) {
+            return false;
+        }
+        if (!cvc5BaseValid) {
+            if (base != null) {
+                cvc5.setBase(base.cvc5());
+            } else {
+                cvc5.clearBase();
+            }
+            cvc5BaseValid = true;
+        }
+        return true;
+    }
+
+    private PortfolioExpr make(Function<Z3Encoder, BoolExpr> z3Maker, Function<CVC5Encoder, Term> cvc5Maker) {
+        BoolExpr z3Expr = z3Maker.apply(z3);
+        return cvc5Available()
+                ? new PortfolioExpr(z3Expr, cvc5Maker.apply(cvc5))
+                : new PortfolioExpr(z3Expr, () -> cvc5Maker.apply(cvc5));
+    }
+
+    private PortfolioExpr combine(List<PortfolioExpr> exprs,
+                                  Function<List<BoolExpr>, BoolExpr> z3Maker, Function<List<Term>, Term> cvc5Maker) {
+        BoolExpr z3Expr = z3Maker.apply(exprs.stream().map(PortfolioExpr::z3).toList());
+        Supplier<Term> cvc5Recipe = () -> cvc5Maker.apply(exprs.stream().map(PortfolioExpr::cvc5).toList());
+        return cvc5Available()
+                ? new PortfolioExpr(z3Expr, cvc5Recipe.get())
+                : new PortfolioExpr(z3Expr, cvc5Recipe);
+    }
+
+    @Override
+    public PortfolioExpr mkFalse() {
+        return make(Z3Encoder::mkFalse, CVC5Encoder::mkFalse);
+    }
+
+    @Override
+    public PortfolioExpr mkTrue() {
+        return make(Z3Encoder::mkTrue, CVC5Encoder::mkTrue);
+    }
+
+    @Override
+    public PortfolioExpr mkReMatch(String key, String regex) {
+        return make(e -> e.mkReMatch(key, regex), e -> e.mkReMatch(key, regex));
+    }
+
+    @Override
+    public PortfolioExpr mkStringEq(String key, String value) {
+        return make(e -> e.mkStringEq(key, value), e -> e.mkStringEq(key, value));
+    }
+
+    @Override
+    public PortfolioExpr mkStringEqIgnoreCase(String key, String value) {
+        return make(e -> e.mkStringEqIgnoreCase(key, value), e -> e.mkStringEqIgnoreCase(key, value));
+    }
+
+    @Override
+    public PortfolioExpr mkIpMatch(String key, String cidr) {
+        return make(e -> e.mkIpMatch(key, cidr), e -> e.mkIpMatch(key, cidr));
+    }
+
+    @Override
+    public PortfolioExpr and(List<PortfolioExpr> exprs) {
+        return combine(exprs, z3::and, cvc5::and);
+    }
+
+    @Override
+    public PortfolioExpr and(PortfolioExpr... exprs) {
+        return and(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final PortfolioExpr and(GrammarlyAPI<PortfolioExpr>... exprs) {
+        return and(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public PortfolioExpr or(List<PortfolioExpr> exprs) {
+        return combine(exprs, z3::or, cvc5::or);
+    }
+
+    @Override
+    public PortfolioExpr or(PortfolioExpr... exprs) {
+        return or(Arrays.asList(exprs));
+    }
+
+    @SafeVarargs
+    @Override
+    public final PortfolioExpr or(GrammarlyAPI<PortfolioExpr>... exprs) {
+        return or(Arrays.stream(exprs).map(e -> e.encode(this)).toList());
+    }
+
+    @Override
+    public PortfolioExpr not(PortfolioExpr expr) {
+        return combine(List.of(expr), e -> z3.not(e.get(0)), e -> cvc5.not(e.get(0)));
+    }
+
+    @Override
+    public PortfolioExpr not(GrammarlyAPI<PortfolioExpr> expr) {
+        return not(expr.encode(this));
+    }
+
+    @Override
+    public Boolean check(PortfolioExpr expr) {
+        return checkStatus(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatus(PortfolioExpr expr) {
+        return raceStatus("check", expr);
+    }
+
+    // The Boolean queries race statuses and only turn the winner into a Boolean, UNKNOWN counting as SAT.
+    private SolverStatus raceStatus(String queryClass, PortfolioExpr expr) {
+        Term cvc5Expr = cvc5Ready() ? expr.cvc5() : null;
+        return race(queryClass, () -> z3.checkStatus(expr.z3()),
+                cvc5Expr == null ? null : () -> cvc5.checkStatus(cvc5Expr));
+    }
+
+    @Override
+    public Boolean checkIntersection(List<PortfolioExpr> exprs) {
+        return raceStatus("checkIntersection", and(exprs)) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public Boolean greaterThan(PortfolioExpr lhs, PortfolioExpr rhs) {
+        return raceStatus("greaterThan", and(lhs, not(rhs))) != SolverStatus.UNSAT
+                && raceStatus("greaterThan", and(not(lhs), rhs)) == SolverStatus.UNSAT;
+    }
+
+    @Override
+    public Boolean greaterEquals(PortfolioExpr lhs, PortfolioExpr rhs) {
+        return raceStatus("greaterEquals", and(not(lhs), rhs)) == SolverStatus.UNSAT;
+    }
+
+    // Key-level comparisons are decided natively in almost all cases; the rare solver fallback stays on Z3
+    // and is not raced.
+    @Override
+    public Boolean greaterThan(VarKey key, String lhs, String rhs) {
+        return z3.greaterThan(key, lhs, rhs);
+    }
+
+    @Override
+    public Boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        return z3.greaterEquals(key, lhs, rhs);
+    }
+
+    @Override
+    public void setBase(PortfolioExpr expr) {
+        z3.setBase(expr.z3());
+        base = expr;
+        cvc5BaseValid = false;
+        cvc5Ready();
+    }
+
+    @Override
+    public void clearBase() {
+        z3.clearBase();
+        base = null;
+        cvc5BaseValid = false;
+        cvc5Ready();
+    }
+
+    @Override
+    public Boolean checkWithBase(PortfolioExpr expr) {
+        return checkStatusWithBase(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(PortfolioExpr expr) {
+        if (base == null) {
+            return checkStatus(expr);
+        }
+        Term cvc5Expr = cvc5Ready() ? expr.cvc5() : null;
+        return race("checkWithBase", () -> z3.checkStatusWithBase(expr.z3()),
+                cvc5Expr == null ? null : () -> cvc5.checkStatusWithBase(cvc5Expr));
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<PortfolioExpr> parts) {
+        List<BoolExpr> z3Parts = parts.stream().map(PortfolioExpr::z3).toList();
+        List<Term> cvc5Parts = cvc5Ready() ? parts.stream().map(PortfolioExpr::cvc5).toList() : null;
+        return race("checkParts", () -> z3.checkPartsWithBase(z3Parts),
+                cvc5Parts == null ? null : () -> cvc5.checkPartsWithBase(cvc5Parts));
+    }
+
+    @Override
+    public long exprId(PortfolioExpr expr) {
+        return z3.exprId(expr.z3());
+    }
+
+    @Override
+    public EncodedAPI<PortfolioExpr> fork() {
+        return new PortfolioEncoder(stats, limits);
+    }
+
+    @Override
+    public void close() {
+        // A CVC5 query cannot be interrupted, so a running one is not waited for: it releases CVC5 itself.
+        executor.shutdownNow();
+        z3.close();
+        synchronized (cvc5Lock) {
+            closed = true;
+            if (!cvc5Busy) {
+                cvc5.close();
+            }
+        }
+    }
+
+    private <R> Callable<R> trackCvc5(Callable<R> cvc5Query) {
+        synchronized (cvc5Lock) {
+            cvc5Busy = true;
+        }
+        return () -> {
+            try {
+                return cvc5Query.call();
+            } finally {
+                synchronized (cvc5Lock) {
+                    cvc5Busy = false;
+                    if (closed) {
+                        cvc5.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Answers a query with the first definitive result of both backends (an UNKNOWN status waits for
+     * the other one), or with Z3 alone if CVC5 is busy, or with the backend the query class is pinned to.
+     */
+    private <R> R race(String queryClass, Callable<R> z3Query, Callable<R> cvc5Query) {
+        try {
+            Backend pinned = stats.pinned(queryClass);
+            if (cvc5Query == null || !cvc5Available() || pinned == Backend.Z3) {
+                return z3Query.call();
+            }
+            if (pinned == Backend.CVC5) {
+                return cvc5Query.call();
+            }
+
+            CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+            Future<R> z3Future = completion.submit(z3Query);
+            completion.submit(trackCvc5(cvc5Query));
+
+            R result = null;
+            Backend winner = null;
+            Backend unknownFrom = null;
+            ExecutionException failure = null;
+            for (int i = 0; i < 2 && winner == null; i++) {
+                Future<R> done = completion.take();
+                Backend backend = done == z3Future ? Backend.Z3 : Backend.CVC5;
+                try {
+                    R answer = done.get();
+                    if (isUnknown(answer)) {
+                        result = answer;
+                        unknownFrom = backend;
+                    } else {
+                        result = answer;
+                        winner = backend;
+                    }
+                } catch (ExecutionException e) {
+                    // The other backend's answer is authoritative.
+                    failure = e;
+                }
+            }
+            if (winner == null) {
+                if (unknownFrom == null) {
+                    throw failure;
+                }
+                winner = unknownFrom;
+            }
+
+            if (winner == Backend.CVC5) {
+                z3.interrupt();
+                awaitQuietly(z3Future);
+            }
+            if (!isUnknown(result)) {
+                stats.recordWin(queryClass, winner);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the portfolio solvers", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Both portfolio solvers failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException("Error during portfolio solving: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isUnknown(Object answer) {
+        return answer == SolverStatus.UNKNOWN
+                || answer instanceof CheckResult checkResult && checkResult.status() == SolverStatus.UNKNOWN;
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // The loser's answer or failure is irrelevant.
+        }
+    }
+}
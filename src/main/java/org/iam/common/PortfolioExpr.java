@@ -0,0 +1,61 @@
+package org.iam.common;
+
+import com.microsoft.z3.BoolExpr;
+import io.github.cvc5.Term;
+
+import java.util.function.Supplier;
+
+/**
+ * One logical formula of the PortfolioEncoder, encoded for both backends.
+ * The CVC5 part is left out while CVC5 is still busy with an abandoned query; the formula then keeps how
+ * to build it, and the encoder builds it on the first query after CVC5 is free again. Equality is that
+ * of the Z3 part, which always exists.
+ */
+public final class PortfolioExpr {
+    private final BoolExpr z3;
+    // Exactly one of both is set: the CVC5 part, or how to build it.
+    private Term cvc5;
+    private Supplier<Term> cvc5Recipe;
+
+    PortfolioExpr(BoolExpr z3, Term cvc5) {
+        this.z3 = z3;
+        this.cvc5 = cvc5;
+    }
+
+    PortfolioExpr(BoolExpr z3, Supplier<Term> cvc5Recipe) {
+        this.z3 = z3;
+        this.cvc5Recipe = cvc5Recipe;
+    }
+
+    public BoolExpr z3() {
+        return z3;
+    }
+
+    /**
+     * The CVC5 part, built first if it was left out. Only the encoder calls this, once CVC5 is free.
+     */
+    Term cvc5() {
+        if (cvc5 == null) {
+            cvc5 = cvc5Recipe.get();
+            cvc5Recipe = null;
+        }
+        return cvc5;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return z3.equals(((PortfolioExpr) o).z3);
+    }
+
+    @Override
+    public int hashCode() {
+        return z3.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PortfolioExpr{" + "z3=" + z3 + '}';
+    }
+}
@@ -0,0 +1,106 @@
+package org.iam.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often each backend of the PortfolioEncoder answered a query class first. Once a backend
+ * has won a clear majority of enough races of a class, later queries of that class are pinned to it
+ * and no longer raced. The counts can be saved to and loaded from a properties file, so the pinning
+ * carries over to later runs.
+ */
+public class PortfolioStats {
+    public enum Backend {
+        Z3,
+        CVC5
+    }
+
+    private static final int MIN_RACES = 100;
+    private static final double PIN_SHARE = 0.9;
+
+    private final Map<String, AtomicLongArray> wins = new ConcurrentHashMap<>();
+
+    public static PortfolioStats load(Path path) throws IOException {
+        PortfolioStats stats = new PortfolioStats();
+        if (path == null || !Files.exists(path)) {
+            return stats;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                continue;
+            }
+            try {
+                Backend backend = Backend.valueOf(name.substring(dot + 1));
+                long count = Long.parseLong(properties.getProperty(name));
+                stats.counts(name.substring(0, dot)).addAndGet(backend.ordinal(), count);
+            } catch (IllegalArgumentException e) {
+                // Entries of unknown backends or malformed counts are skipped.
+            }
+        }
+        return stats;
+    }
+
+    public void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, AtomicLongArray> entry : wins.entrySet()) {
+            for (Backend backend : Backend.values()) {
+                properties.setProperty(entry.getKey() + "." + backend, String.valueOf(entry.getValue().get(backend.ordinal())));
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, "Portfolio wins per query class");
+        }
+    }
+
+    public void recordWin(String queryClass, Backend backend) {
+        counts(queryClass).incrementAndGet(backend.ordinal());
+    }
+
+    /**
+     * @return the backend queries of this class are pinned to, or null if they should be raced.
+     */
+    public Backend pinned(String queryClass) {
+        AtomicLongArray counts = wins.get(queryClass);
+        if (counts == null) {
+            return null;
+        }
+        long total = 0;
+        for (Backend backend : Backend.values()) {
+            total += counts.get(backend.ordinal());
+        }
+        if (total < MIN_RACES) {
+            return null;
+        }
+        for (Backend backend : Backend.values()) {
+            if (counts.get(backend.ordinal()) >= PIN_SHARE * total) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        Map<String, String> summary = new TreeMap<>();
+        wins.forEach((queryClass, counts) -> summary.put(queryClass,
+                "Z3=" + counts.get(Backend.Z3.ordinal()) + " CVC5=" + counts.get(Backend.CVC5.ordinal())));
+        return "PortfolioStats" + summary;
+    }
+
+    private AtomicLongArray counts(String queryClass) {
+        return wins.computeIfAbsent(queryClass, k -> new AtomicLongArray(Backend.values().length));
+    }
+}
@@ -8,56 +8,299 @@ import com.google.ortools.linearsolver.MPVariable;
 
 import java.util.*;
 
+/**
+ * Minimum set cover of a universe by unit-cost subsets. The instance is first shrunk by the classic
+ * reductions (duplicate and dominated subsets, dominated elements, essential subsets), the rest is covered
+ * greedily and improved by local search. The greedy cover can then be refined by the exact ILP (CBC),
+ * optionally under a time limit; the ILP only ever replaces it by a strictly smaller cover.
+ * Elements no subset contains cannot be covered and are left out, the caller sees them missing.
+ */
 public class SetCoverSolver {
-    static {
-        Loader.loadNativeLibraries();
+    // Holder of the OR-Tools natives, loaded by the first exact refinement only.
+    private static final class OrTools {
+        static {
+            Loader.loadNativeLibraries();
+        }
+
+        static void load() {
+        }
     }
 
-    public static Map<Object, Set<Integer>> solve(
-            Map<Object, Set<Integer>> subsets,
-            Set<Integer> universe) {
+    public static Map<Object, BitSet> solve(
+            Map<Object, BitSet> subsets,
+            BitSet universe) {
+        return solve(subsets, universe, true, 0);
+    }
 
-        // Create an ILP solver using the CBC solver backend
-        MPSolver solver = new MPSolver("SetCover", MPSolver.OptimizationProblemType.CBC_MIXED_INTEGER_PROGRAMMING);
+    /**
+     * @param exact     refine the heuristic cover by the ILP
+     * @param timeLimit the time limit of the ILP in milliseconds, 0 means unbounded
+     */
+    public static Map<Object, BitSet> solve(
+            Map<Object, BitSet> subsets,
+            BitSet universe,
+            boolean exact,
+            int timeLimit) {
         List<Object> subsetKeys = new ArrayList<>(subsets.keySet());
         int n = subsetKeys.size(); // Number of subsets
-
-        // Decision variables: x_i ∈ {0,1} (1 if subset i is selected, 0 otherwise)
-        MPVariable[] x = new MPVariable[n];
+        BitSet[] columns = new BitSet[n];
         for (int i = 0; i < n; i++) {
-            x[i] = solver.makeIntVar(0, 1, "x" + i);
+            columns[i] = (BitSet) subsets.get(subsetKeys.get(i)).clone();
+            columns[i].and(universe);
         }
 
-        // Objective function: minimize the number of selected subsets
-        MPObjective objective = solver.objective();
-        for (int i = 0; i < n; i++) {
-            objective.setCoefficient(x[i], 1);
+        Instance instance = new Instance(columns, universe);
+        instance.reduce();
+        BitSet cover = instance.greedy();
+        instance.improve(cover);
+        if (exact && cover.cardinality() > 1) {
+            BitSet exactCover = instance.exact(cover, timeLimit);
+            if (exactCover != null && exactCover.cardinality() < cover.cardinality()) {
+                cover = exactCover;
+            }
         }
-        objective.setMinimization();
+        cover.or(instance.selected);
 
-        // Constraints: each element in the universe must be covered by at least one selected subset
-        for (int u : universe) {
-            MPConstraint constraint = solver.makeConstraint(1, Double.POSITIVE_INFINITY, "cover_" + u);
-            for (int i = 0; i < n; i++) {
-                if (subsets.get(subsetKeys.get(i)).contains(u)) {
-                    constraint.setCoefficient(x[i], 1);
+        // Process and return the solution
+        Map<Object, BitSet> selectedSubsets = new HashMap<>();
+        for (int i = cover.nextSetBit(0); i >= 0; i = cover.nextSetBit(i + 1)) {
+            Object key = subsetKeys.get(i);
+            selectedSubsets.put(key, (BitSet) subsets.get(key).clone());
+        }
+        return selectedSubsets;
+    }
+
+    /**
+     * The instance left after the reductions: the subsets still in play and the elements still to cover,
+     * with the element to subsets index over both.
+     */
+    private static class Instance {
+        private final BitSet[] columns;
+        // Subsets chosen by the reductions, part of every cover.
+        private final BitSet selected = new BitSet();
+        private final BitSet activeColumns = new BitSet();
+        private final BitSet elements;
+        private final Map<Integer, BitSet> rows = new HashMap<>();
+
+        private Instance(BitSet[] columns, BitSet universe) {
+            this.columns = columns;
+            this.elements = new BitSet();
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].isEmpty()) {
+                    continue;
+                }
+                activeColumns.set(i);
+                for (int e = columns[i].nextSetBit(0); e >= 0; e = columns[i].nextSetBit(e + 1)) {
+                    rows.computeIfAbsent(e, k -> new BitSet()).set(i);
+                    elements.set(e);
                 }
             }
         }
 
-        // Solve the ILP problem
-        MPSolver.ResultStatus status = solver.solve();
+        // The elements of a subset still to cover.
+        private BitSet remaining(int column) {
+            BitSet remaining = (BitSet) columns[column].clone();
+            remaining.and(elements);
+            return remaining;
+        }
+
+        private void dropColumn(int column) {
+            activeColumns.clear(column);
+            for (int e = columns[column].nextSetBit(0); e >= 0; e = columns[column].nextSetBit(e + 1)) {
+                rows.get(e).clear(column);
+            }
+        }
+
+        private void selectColumn(int column) {
+            selected.set(column);
+            elements.andNot(columns[column]);
+            dropColumn(column);
+        }
 
-        // Process and return the solution
-        Map<Object, Set<Integer>> selectedSubsets = new HashMap<>();
-        if (status == MPSolver.ResultStatus.OPTIMAL) {
-            for (int i = 0; i < n; i++) {
-                if (x[i].solutionValue() == 1) {
-                    Object key = subsetKeys.get(i);
-                    selectedSubsets.put(key, new HashSet<>(subsets.get(key)));
+        void reduce() {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                // Essential subsets: the only one left containing some element.
+                for (int e = elements.nextSetBit(0); e >= 0; e = elements.nextSetBit(e + 1)) {
+                    BitSet row = rows.get(e);
+                    if (row.cardinality() == 1) {
+                        selectColumn(row.nextSetBit(0));
+                        changed = true;
+                    }
+                }
+                // Duplicate and dominated subsets: contained in another one, ties keep the lower index.
+                List<Integer> active = activeColumns.stream().boxed().toList();
+                BitSet[] remainders = new BitSet[columns.length];
+                for (int i : active) {
+                    remainders[i] = remaining(i);
+                }
+                for (int i : active) {
+                    if (remainders[i].isEmpty()) {
+                        dropColumn(i);
+                        changed = true;
+                        continue;
+                    }
+                    for (int j : active) {
+                        if (i == j || !activeColumns.get(j) || !contains(remainders[j], remainders[i])) {
+                            continue;
+                        }
+                        if (!remainders[i].equals(remainders[j]) || j < i) {
+                            dropColumn(i);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+                // Dominated elements: covering some other element covers them as well.
+                List<Integer> open = elements.stream().boxed().toList();
+                for (int e : open) {
+                    for (int f : open) {
+                        if (e == f || !elements.get(f) || !contains(rows.get(e), rows.get(f))) {
+                            continue;
+                        }
+                        if (!rows.get(e).equals(rows.get(f)) || f < e) {
+                            elements.clear(e);
+                            changed = true;
+                            break;
+                        }
+                    }
                 }
             }
         }
-        return selectedSubsets;
+
+        // Picks the subset covering most of the uncovered elements until all are covered.
+        BitSet greedy() {
+            BitSet cover = new BitSet();
+            BitSet uncovered = (BitSet) elements.clone();
+            while (!uncovered.isEmpty()) {
+                int best = -1;
+                int bestGain = 0;
+                for (int i = activeColumns.nextSetBit(0); i >= 0; i = activeColumns.nextSetBit(i + 1)) {
+                    BitSet gain = (BitSet) columns[i].clone();
+                    gain.and(uncovered);
+                    if (gain.cardinality() > bestGain) {
+                        best = i;
+                        bestGain = gain.cardinality();
+                    }
+                }
+                cover.set(best);
+                uncovered.andNot(columns[best]);
+            }
+            return cover;
+        }
+
+        /**
+         * Local search on a cover: drops redundant subsets and replaces two subsets by one covering what
+         * only they cover, until neither applies.
+         */
+        void improve(BitSet cover) {
+            boolean changed = true;
+            while (changed) {
+                changed = dropRedundant(cover) | swapTwoForOne(cover);
+            }
+        }
+
+        private boolean dropRedundant(BitSet cover) {
+            boolean changed = false;
+            for (int i = cover.nextSetBit(0); i >= 0; i = cover.nextSetBit(i + 1)) {
+                cover.clear(i);
+                if (covers(cover)) {
+                    changed = true;
+                } else {
+                    cover.set(i);
+                }
+            }
+            return changed;
+        }
+
+        private boolean swapTwoForOne(BitSet cover) {
+            List<Integer> chosen = cover.stream().boxed().toList();
+            for (int a = 0; a < chosen.size(); a++) {
+                for (int b = a + 1; b < chosen.size(); b++) {
+                    cover.clear(chosen.get(a));
+                    cover.clear(chosen.get(b));
+                    BitSet missing = (BitSet) elements.clone();
+                    for (int i = cover.nextSetBit(0); i >= 0; i = cover.nextSetBit(i + 1)) {
+                        missing.andNot(columns[i]);
+                    }
+                    for (int c = activeColumns.nextSetBit(0); c >= 0; c = activeColumns.nextSetBit(c + 1)) {
+                        if (!cover.get(c) && contains(columns[c], missing)) {
+                            cover.set(c);
+                            return true;
+                        }
+                    }
+                    cover.set(chosen.get(a));
+                    cover.set(chosen.get(b));
+                }
+            }
+            return false;
+        }
+
+        private boolean covers(BitSet cover) {
+            BitSet uncovered = (BitSet) elements.clone();
+            for (int i = cover.nextSetBit(0); i >= 0 && !uncovered.isEmpty(); i = cover.nextSetBit(i + 1)) {
+                uncovered.andNot(columns[i]);
+            }
+            return uncovered.isEmpty();
+        }
+
+        /**
+         * The optimal cover of the reduced instance by the ILP, started from the given cover. Returns null
+         * if the ILP found no cover in time.
+         */
+        BitSet exact(BitSet start, int timeLimit) {
+            OrTools.load();
+            // Create an ILP solver using the CBC solver backend
+            MPSolver solver = new MPSolver("SetCover", MPSolver.OptimizationProblemType.CBC_MIXED_INTEGER_PROGRAMMING);
+            if (timeLimit > 0) {
+                solver.setTimeLimit(timeLimit);
+            }
+
+            // Decision variables: x_i ∈ {0,1} (1 if subset i is selected, 0 otherwise)
+            Map<Integer, MPVariable> x = new HashMap<>();
+            MPObjective objective = solver.objective();
+            for (int i = activeColumns.nextSetBit(0); i >= 0; i = activeColumns.nextSetBit(i + 1)) {
+                x.put(i, solver.makeIntVar(0, 1, "x" + i));
+                // Objective function: minimize the number of selected subsets
+                objective.setCoefficient(x.get(i), 1);
+            }
+            objective.setMinimization();
+
+            // Constraints: each element left must be covered by at least one selected subset
+            for (int e = elements.nextSetBit(0); e >= 0; e = elements.nextSetBit(e + 1)) {
+                MPConstraint constraint = solver.makeConstraint(1, Double.POSITIVE_INFINITY, "cover_" + e);
+                BitSet row = rows.get(e);
+                for (int i = row.nextSetBit(0); i >= 0; i = row.nextSetBit(i + 1)) {
+                    constraint.setCoefficient(x.get(i), 1);
+                }
+            }
+
+            MPVariable[] hintVars = x.values().toArray(new MPVariable[0]);
+            double[] hintValues = new double[hintVars.length];
+            int k = 0;
+            for (Map.Entry<Integer, MPVariable> entry : x.entrySet()) {
+                hintValues[k++] = start.get(entry.getKey()) ? 1 : 0;
+            }
+            solver.setHint(hintVars, hintValues);
+
+            MPSolver.ResultStatus status = solver.solve();
+            if (status != MPSolver.ResultStatus.OPTIMAL && status != MPSolver.ResultStatus.FEASIBLE) {
+                return null;
+            }
+            BitSet cover = new BitSet();
+            for (Map.Entry<Integer, MPVariable> entry : x.entrySet()) {
+                if (entry.getValue().solutionValue() > 0.5) {
+                    cover.set(entry.getKey());
+                }
+            }
+            return covers(cover) ? cover : null;
+        }
+    }
+
+    private static boolean contains(BitSet superset, BitSet subset) {
+        BitSet rest = (BitSet) subset.clone();
+        rest.andNot(superset);
+        return rest.isEmpty();
     }
 }
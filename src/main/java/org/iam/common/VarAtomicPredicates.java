@@ -1,86 +1,270 @@
 package org.iam.common;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
 import org.iam.common.apis.EncodedAPI;
 import org.iam.common.reduce.DynamicVar;
 import org.iam.common.reduce.StaticVar;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The atomic predicates of a set of StaticVars: the coarsest partition of their union into pairwise
+ * disjoint, non-empty predicates such that every StaticVar is a union of some of them. A predicate is
+ * identified by its signature, the bitset of the (indices of the) StaticVars containing it, and the
+ * predicates are numbered in signature order, so the result does not depend on how it was computed.
+ * <p>
+ * Sequentially, a partition of the universe is refined in place by one StaticVar at a time. With more
+ * than one thread, the StaticVars are split in halves whose partitions are computed by fork-join tasks
+ * and merged pairwise. Every pool thread works on a forked encoder of its own, so only signatures cross
+ * tasks and a merge rebuilds the cells it needs in its thread's context. Each StaticVar is converted at
+ * most once per encoder.
+ */
 public class VarAtomicPredicates<T> {
-    private final Set<StaticVar<T>> _staticVars;
+    // Tasks over at most that many StaticVars refine sequentially instead of splitting further.
+    private static final int LEAF_SIZE = 8;
 
-    private int _numAtomicPredicates;
+    private final List<StaticVar<T>> _staticVars;
+
+    private final long deadline;
 
-    private Map<StaticVar<T>, Set<Integer>> _varToPredicates;
+    private int _numAtomicPredicates;
 
-//    private Map<Integer, DynamicVar<T>> _predicatesToVar;
+    private Map<StaticVar<T>, BitSet> _varToPredicates;
 
     public VarAtomicPredicates(Set<StaticVar<T>> staticVars, StaticVar<T> trueStaticVar, EncodedAPI<T> encoder) {
+        this(staticVars, trueStaticVar, encoder, 1);
+    }
+
+    public VarAtomicPredicates(Set<StaticVar<T>> staticVars, StaticVar<T> trueStaticVar, EncodedAPI<T> encoder,
+                               int threads) {
+        this(staticVars, trueStaticVar, encoder, threads, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param threads  parallelism of the fork-join computation; 1 computes sequentially on the encoder.
+     * @param deadline System.nanoTime() after which the computation is abandoned with a CancellationException.
+     */
+    public VarAtomicPredicates(Set<StaticVar<T>> staticVars, StaticVar<T> trueStaticVar, EncodedAPI<T> encoder,
+                               int threads, long deadline) {
+        this.deadline = deadline;
+        // The true var comes last and is part of every predicate, it is never refined by.
         _staticVars = ImmutableSet.<StaticVar<T>>builder()
-                .addAll(staticVars)
+                .addAll(staticVars.stream().filter(var -> !var.equals(trueStaticVar)).toList())
                 .add(trueStaticVar)
-                .build();
-        initAtomicPredicates(encoder);
+                .build()
+                .asList();
+        int trueIndex = _staticVars.size() - 1;
+        List<BitSet> signatures = threads > 1 && trueIndex > LEAF_SIZE
+                ? parallelSignatures(encoder, threads, trueIndex)
+                : refine(new Worker(encoder), 0, trueIndex);
+        for (BitSet signature : signatures) {
+            signature.set(trueIndex);
+        }
+        initAtomicPredicates(signatures);
     }
 
-    private void initAtomicPredicates(EncodedAPI<T> encoder) {
-        SetMultimap<DynamicVar<T>, StaticVar<T>> mmap = HashMultimap.create();
-        for (StaticVar<T> textElement : _staticVars) {
-            DynamicVar<T> restDynamicVar = textElement.convert(encoder);
-            if (restDynamicVar.isEmpty()) {
+    /**
+     * Refines the universe by the StaticVars from..to-1 in place and returns the signatures of the cells.
+     */
+    private List<BitSet> refine(Worker worker, int from, int to) {
+        EncodedAPI<T> encoder = worker.encoder;
+        // Emptiness decisions of the formulas built here, shared by all predicates.
+        Map<T, Boolean> decisions = new HashMap<>();
+        List<DynamicVar<T>> predicates = new ArrayList<>();
+        List<BitSet> members = new ArrayList<>();
+        predicates.add(new DynamicVar<>(encoder, encoder.mkTrue(), decisions).assumeNonEmpty());
+        members.add(new BitSet(_staticVars.size()));
+        for (int var = from; var < to; var++) {
+            checkDeadline();
+            StaticVar<T> textElement = _staticVars.get(var);
+            DynamicVar<T> element = worker.var(var);
+            if (element.isEmpty()) {
                 throw new RuntimeException("StaticVar " + textElement + " is empty (UNSAT)");
             }
-            SetMultimap<DynamicVar<T>, StaticVar<T>> newMMap = HashMultimap.create(mmap);
-            for (DynamicVar<T> dynamicVar : mmap.keySet()) {
-                if (dynamicVar.equals(restDynamicVar)) {
-                    newMMap.put(dynamicVar, textElement);
+            encoder.setBase(element.getValue());
+            // Predicates split off below are parts of the element already, they need no visit.
+            int size = predicates.size();
+            for (int i = 0; i < size; i++) {
+                DynamicVar<T> predicate = predicates.get(i);
+                if (predicate.equals(element)) {
+                    // Syntactically the same set, so disjoint from all other predicates.
+                    members.get(i).set(var);
                     break;
                 }
-                DynamicVar<T> inter = dynamicVar.inter(restDynamicVar);
+                if (!encoder.checkWithBase(predicate.getValue())) {
+                    continue;
+                }
+                DynamicVar<T> diff = predicate.minus(element);
+                if (!diff.isEmpty()) {
+                    predicates.set(i, predicate.inter(element).assumeNonEmpty());
+                    predicates.add(diff);
+                    members.add((BitSet) members.get(i).clone());
+                }
+                members.get(i).set(var);
+            }
+        }
+        encoder.clearBase();
+        return members;
+    }
+
+    private List<BitSet> parallelSignatures(EncodedAPI<T> encoder, int threads, int size) {
+        Queue<Worker> workers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Worker> threadWorker = ThreadLocal.withInitial(() -> {
+            Worker worker = new Worker(encoder.fork());
+            workers.add(worker);
+            return worker;
+        });
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new PartitionTask(threadWorker, 0, size));
+        } finally {
+            // A failed task may leave others running on their encoders, they are closed once all are done.
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            workers.forEach(worker -> worker.encoder.close());
+        }
+    }
 
-                if (inter.isEmpty()) continue;
+    /**
+     * An encoder with the StaticVars converted into its context, each on first use. Tasks only ever use
+     * the worker of the thread they run on, and set and clear its base within one step, so a worker is
+     * free whenever a task is stolen.
+     */
+    private class Worker {
+        private final EncodedAPI<T> encoder;
+        private final List<DynamicVar<T>> vars;
 
-                Set<StaticVar<T>> staticVars = newMMap.removeAll(dynamicVar);
-                DynamicVar<T> diff = dynamicVar.minus(restDynamicVar);
-                newMMap.putAll(inter, staticVars);
-                if (!diff.isEmpty()) {
-                    newMMap.putAll(diff, staticVars);
+        private Worker(EncodedAPI<T> encoder) {
+            this.encoder = encoder;
+            this.vars = new ArrayList<>(Collections.nCopies(_staticVars.size(), null));
+        }
+
+        private DynamicVar<T> var(int index) {
+            DynamicVar<T> converted = vars.get(index);
+            if (converted == null) {
+                converted = _staticVars.get(index).convert(encoder);
+                vars.set(index, converted);
+            }
+            return converted;
+        }
+    }
+
+    private class PartitionTask extends RecursiveTask<List<BitSet>> {
+        private final ThreadLocal<Worker> threadWorker;
+        private final int from;
+        private final int to;
+
+        private PartitionTask(ThreadLocal<Worker> threadWorker, int from, int to) {
+            this.threadWorker = threadWorker;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<BitSet> compute() {
+            if (to - from <= LEAF_SIZE) {
+                return refine(threadWorker.get(), from, to);
+            }
+            int mid = (from + to) >>> 1;
+            PartitionTask left = new PartitionTask(threadWorker, from, mid);
+            left.fork();
+            List<BitSet> rightSignatures = new PartitionTask(threadWorker, mid, to).compute();
+            List<BitSet> leftSignatures = left.join();
+            return merge(threadWorker.get(), leftSignatures, rightSignatures, mid);
+        }
+
+        /**
+         * The non-empty intersections of the cells of both partitions of the universe, the left one over
+         * the StaticVars from..mid-1 and the right one over mid..to-1.
+         */
+        private List<BitSet> merge(Worker worker, List<BitSet> left, List<BitSet> right, int mid) {
+            EncodedAPI<T> encoder = worker.encoder;
+            List<T> rightCells = right.stream().map(signature -> cell(worker, signature, mid, to)).toList();
+            List<BitSet> merged = new ArrayList<>();
+            for (BitSet leftSignature : left) {
+                checkDeadline();
+                encoder.setBase(cell(worker, leftSignature, from, mid));
+                for (int i = 0; i < right.size(); i++) {
+                    if (encoder.checkWithBase(rightCells.get(i))) {
+                        BitSet signature = (BitSet) leftSignature.clone();
+                        signature.or(right.get(i));
+                        merged.add(signature);
+                    }
                 }
-                newMMap.put(inter, textElement);
-                restDynamicVar = restDynamicVar.minus(dynamicVar);
             }
+            encoder.clearBase();
+            return merged;
+        }
 
-            if (!restDynamicVar.isEmpty()) {
-                newMMap.put(restDynamicVar, textElement);
+        private T cell(Worker worker, BitSet signature, int from, int to) {
+            List<T> literals = new ArrayList<>(to - from);
+            for (int var = from; var < to; var++) {
+                T value = worker.var(var).getValue();
+                literals.add(signature.get(var) ? value : worker.encoder.not(value));
             }
-            mmap = newMMap;
+            return worker.encoder.and(literals);
         }
+    }
+
+    private void checkDeadline() {
+        if (System.nanoTime() - deadline > 0) {
+            throw new CancellationException("Atomic predicates not computed in time");
+        }
+    }
 
-//        _predicatesToVar = new HashMap<>();
-        SetMultimap<Integer, StaticVar<T>> iToR = HashMultimap.create();
-        int i = 0;
-        for (DynamicVar<T> a : mmap.keySet()) {
-//            _predicatesToVar.put(i, a);
-            iToR.putAll(i, mmap.get(a));
-            i++;
+    private void initAtomicPredicates(List<BitSet> signatures) {
+        signatures.sort(VarAtomicPredicates::compareSignatures);
+        _numAtomicPredicates = signatures.size();
+        BitSet[] varPredicates = new BitSet[_staticVars.size()];
+        for (int var = 0; var < varPredicates.length; var++) {
+            varPredicates[var] = new BitSet(_numAtomicPredicates);
         }
-        _numAtomicPredicates = i;
-        _varToPredicates = Multimaps.asMap(Multimaps.invertFrom(iToR, HashMultimap.create()));
+        for (int i = 0; i < _numAtomicPredicates; i++) {
+            BitSet signature = signatures.get(i);
+            for (int var = signature.nextSetBit(0); var >= 0; var = signature.nextSetBit(var + 1)) {
+                varPredicates[var].set(i);
+            }
+        }
+        _varToPredicates = new HashMap<>();
+        for (int var = 0; var < varPredicates.length; var++) {
+            _varToPredicates.put(_staticVars.get(var), varPredicates[var]);
+        }
+    }
+
+    // Orders signatures by the lowest StaticVar they differ in, the one containing it first.
+    private static int compareSignatures(BitSet lhs, BitSet rhs) {
+        BitSet difference = (BitSet) lhs.clone();
+        difference.xor(rhs);
+        int first = difference.nextSetBit(0);
+        return first < 0 ? 0 : (lhs.get(first) ? -1 : 1);
     }
 
     public int getNumAtomicPredicates() {
         return _numAtomicPredicates;
     }
 
+    /**
+     * The atomic predicates of every StaticVar, as a bitset over the predicate indices 0..getNumAtomicPredicates().
+     */
     @Nonnull
-    public Map<StaticVar<T>, Set<Integer>> getAtomicPredicates() {
+    public Map<StaticVar<T>, BitSet> getAtomicPredicates() {
         return _varToPredicates;
     }
 }
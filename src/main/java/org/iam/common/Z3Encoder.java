@@ -1,23 +1,71 @@
 package org.iam.common;
 
 import com.microsoft.z3.*;
+import org.iam.common.apis.CheckResult;
 import org.iam.common.apis.EncodedAPI;
 import org.iam.common.apis.GrammarlyAPI;
+import org.iam.common.apis.SolverLimits;
+import org.iam.common.apis.SolverStatus;
 import org.iam.common.vars.VarKey;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class Z3Encoder implements EncodedAPI<BoolExpr> {
 
     private final Context ctx;
+    private final SolverLimits limits;
     private final Solver solver;
+    private final Solver baseSolver;
+    private boolean hasBase = false;
+
+    // Intern tables: the same few keys and patterns are encoded again in every mining round.
+    private final Map<String, Expr<SeqSort<CharSort>>> stringConsts = new HashMap<>();
+    private final Map<String, BitVecExpr> bitVecConsts = new HashMap<>();
+    private final Map<String, ReExpr<SeqSort<CharSort>>> regexes = new HashMap<>();
+    private final Map<String, Map<String, BoolExpr>> reMatches = new HashMap<>();
+    private final Map<String, Map<String, BoolExpr>> ipMatches = new HashMap<>();
+    // Assumption literals tracking the parts of checkPartsWithBase, by position.
+    private final List<BoolExpr> partLiterals = new ArrayList<>();
 
     public Z3Encoder() {
+        this(SolverLimits.NONE);
+    }
+
+    public Z3Encoder(SolverLimits limits) {
         this.ctx = new Context();
+        this.limits = limits;
         this.solver = ctx.mkSolver();
+        this.baseSolver = ctx.mkSolver();
+        applyLimits(this.solver);
+        applyLimits(this.baseSolver);
+    }
+
+    private void applyLimits(Solver target) {
+        if (!limits.isBounded()) {
+            return;
+        }
+        Params params = ctx.mkParams();
+        if (limits.timeoutMillis() > 0) {
+            params.add("timeout", limits.timeoutMillis());
+        }
+        if (limits.resourceLimit() > 0) {
+            params.add("rlimit", limits.resourceLimit());
+        }
+        target.setParameters(params);
+    }
+
+    private static SolverStatus toStatus(Status status) {
+        return switch (status) {
+            case SATISFIABLE -> SolverStatus.SAT;
+            case UNSATISFIABLE -> SolverStatus.UNSAT;
+            default -> SolverStatus.UNKNOWN;
+        };
     }
 
     @Override
@@ -35,16 +83,25 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
         if (regex.equals("*")) {
             return mkTrue();
         }
+        return reMatches.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(regex, r -> encodeReMatch(key, r));
+    }
+
+    private BoolExpr encodeReMatch(String key, String regex) {
         if (regex.equals("?")) {
-            return ctx.mkNot(ctx.mkEq(ctx.mkConst(key, ctx.getStringSort()), ctx.mkString("")));
+            return ctx.mkNot(ctx.mkEq(stringConst(key), ctx.mkString("")));
         }
-        return ctx.mkInRe(ctx.mkConst(key, ctx.getStringSort()), mkRegex(regex));
+        return ctx.mkInRe(stringConst(key), mkRegex(regex));
+    }
+
+    private Expr<SeqSort<CharSort>> stringConst(String key) {
+        return stringConsts.computeIfAbsent(key, k -> ctx.mkConst(k, ctx.getStringSort()));
     }
 
     @Override
     public BoolExpr mkStringEq(String key, String value) {
         // Strict string equality
-        return ctx.mkEq(ctx.mkConst(key, ctx.getStringSort()), ctx.mkString(value));
+        return ctx.mkEq(stringConst(key), ctx.mkString(value));
     }
 
     @Override
@@ -79,12 +136,17 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
             );
         }
 
-        return ctx.mkInRe(ctx.mkConst(key, ctx.getStringSort()), fullRe);
+        return ctx.mkInRe(stringConst(key), fullRe);
     }
 
     // ... [mkIpMatch, ipToLong, mkRegex, and, or, not, check methods kept as is] ...
     @Override
     public BoolExpr mkIpMatch(String key, String cidr) {
+        return ipMatches.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(cidr, c -> encodeIpMatch(key, c));
+    }
+
+    private BoolExpr encodeIpMatch(String key, String cidr) {
         try {
             String[] parts = cidr.split("/");
             String ipPart = parts[0];
@@ -94,7 +156,7 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
             long maskLong = (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
             long networkLong = ipLong & maskLong;
 
-            BitVecExpr ipVar = ctx.mkBVConst(key, 32);
+            BitVecExpr ipVar = bitVecConsts.computeIfAbsent(key, k -> ctx.mkBVConst(k, 32));
             BitVecNum mask = ctx.mkBV(maskLong, 32);
             BitVecNum network = ctx.mkBV(networkLong, 32);
 
@@ -117,8 +179,12 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
         return result;
     }
 
-    @SuppressWarnings("unchecked")
     private ReExpr<SeqSort<CharSort>> mkRegex(String regex) {
+        return regexes.computeIfAbsent(regex, this::encodeRegex);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReExpr<SeqSort<CharSort>> encodeRegex(String regex) {
          if (!regex.contains("?") && !regex.contains("*")) {
              return ctx.mkToRe(ctx.mkString(regex));
          }
@@ -207,20 +273,134 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
 
     @Override
     public Boolean check(BoolExpr expr) {
+        return checkStatus(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatus(BoolExpr expr) {
         solver.reset();
+        applyLimits(solver);
         solver.add(expr);
-        Status status = solver.check();
-        assert (status != Status.UNKNOWN) : "Unable to solve the problem";
-        return status == Status.SATISFIABLE;
+        return toStatus(solver.check());
     }
 
     @Override
     public Boolean checkIntersection(List<BoolExpr> exprs) {
         solver.reset();
+        applyLimits(solver);
         solver.add(exprs.toArray(new BoolExpr[0]));
-        Status status = solver.check();
-        assert (status != Status.UNKNOWN) : "Unable to solve the problem";
-        return status == Status.SATISFIABLE;
+        return toStatus(solver.check()) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public void setBase(BoolExpr expr) {
+        baseSolver.reset();
+        applyLimits(baseSolver);
+        baseSolver.add(expr);
+        hasBase = true;
+    }
+
+    @Override
+    public void clearBase() {
+        baseSolver.reset();
+        applyLimits(baseSolver);
+        hasBase = false;
+    }
+
+    @Override
+    public Boolean checkWithBase(BoolExpr expr) {
+        return checkStatusWithBase(expr) != SolverStatus.UNSAT;
+    }
+
+    @Override
+    public SolverStatus checkStatusWithBase(BoolExpr expr) {
+        if (!hasBase) {
+            return checkStatus(expr);
+        }
+        baseSolver.push();
+        try {
+            baseSolver.add(expr);
+            return toStatus(baseSolver.check());
+        } finally {
+            baseSolver.pop();
+        }
+    }
+
+    @Override
+    public CheckResult checkPartsWithBase(List<BoolExpr> parts) {
+        // Without a base the base solver holds no assertions, so it answers both cases.
+        baseSolver.push();
+        try {
+            BoolExpr[] literals = new BoolExpr[parts.size()];
+            for (int i = 0; i < parts.size(); i++) {
+                literals[i] = partLiteral(i);
+                baseSolver.add(ctx.mkImplies(literals[i], parts.get(i)));
+            }
+            return switch (toStatus(baseSolver.check(literals))) {
+                case SAT -> CheckResult.sat(modelValues(baseSolver.getModel()));
+                case UNSAT -> CheckResult.unsat(coreIndices(baseSolver.getUnsatCore(), literals));
+                default -> CheckResult.unknown();
+            };
+        } finally {
+            baseSolver.pop();
+        }
+    }
+
+    private BoolExpr partLiteral(int index) {
+        while (partLiterals.size() <= index) {
+            partLiterals.add(ctx.mkBoolConst("part!" + partLiterals.size()));
+        }
+        return partLiterals.get(index);
+    }
+
+    private Map<String, String> modelValues(Model model) {
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<String, Expr<SeqSort<CharSort>>> entry : stringConsts.entrySet()) {
+            Expr<SeqSort<CharSort>> value = model.getConstInterp(entry.getValue());
+            // Z3 prints characters outside printable ASCII as escapes; such values are left out
+            // rather than handed on in a form that is not the actual string.
+            if (value != null && value.isString() && value.getString().indexOf('\\') < 0) {
+                values.put(entry.getKey(), value.getString());
+            }
+        }
+        for (Map.Entry<String, BitVecExpr> entry : bitVecConsts.entrySet()) {
+            if (model.getConstInterp(entry.getValue()) instanceof BitVecNum value) {
+                values.put(CheckResult.ipVariable(entry.getKey()), IpRangeSet.longToIp(value.getLong()));
+            }
+        }
+        return values;
+    }
+
+    private static BitSet coreIndices(BoolExpr[] core, BoolExpr[] literals) {
+        BitSet indices = new BitSet(literals.length);
+        for (BoolExpr literal : core) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(literal)) {
+                    indices.set(i);
+                }
+            }
+        }
+        return indices;
+    }
+
+    @Override
+    public long exprId(BoolExpr expr) {
+        return expr.getId();
+    }
+
+    @Override
+    public EncodedAPI<BoolExpr> fork() {
+        return new Z3Encoder(limits);
+    }
+
+    @Override
+    public void close() {
+        ctx.close();
+    }
+
+    // Makes a check running on another thread return UNKNOWN as soon as possible.
+    public void interrupt() {
+        ctx.interrupt();
     }
 
     @Override
@@ -244,9 +424,13 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
 
         switch(key) {
             case AWS_SOURCE_IP -> {
-                return greaterThan(mkIpMatch("tmp", lhs), mkIpMatch("tmp", rhs));
+                return IpRangeSet.greaterThan(lhs, rhs);
             }
             default -> {
+                Boolean decided = PatternContainment.greaterThan(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
                 return greaterThan(mkReMatch("tmp", lhs), mkReMatch("tmp", rhs));
             }
         }
@@ -272,11 +456,13 @@ public class Z3Encoder implements EncodedAPI<BoolExpr> {
 
         switch (key) {
             case AWS_SOURCE_IP -> {
-                BoolExpr lhsExpr = mkIpMatch("tmp", lhs);
-                BoolExpr rhsExpr = mkIpMatch("tmp", rhs);
-                return greaterEquals(lhsExpr, rhsExpr);
+                return IpRangeSet.greaterEquals(lhs, rhs);
             }
             default -> {
+                Boolean decided = PatternContainment.greaterEquals(lhs, rhs);
+                if (decided != null) {
+                    return decided;
+                }
                 BoolExpr lhsExpr = mkReMatch("tmp", lhs);
                 BoolExpr rhsExpr = mkReMatch("tmp", rhs);
                 return greaterEquals(lhsExpr, rhsExpr);
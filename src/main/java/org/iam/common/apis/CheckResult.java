@@ -0,0 +1,35 @@
+package org.iam.common.apis;
+
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * The answer to EncodedAPI.checkPartsWithBase. A SAT answer may carry a model mapping every variable
+ * to a value (a string, or a dotted address for IP variables, which are named by ipVariable so that
+ * they never clash with a string variable of the same name); an UNSAT answer may carry the indices
+ * of the parts that are already unsatisfiable together with the base. Either is null when the backend
+ * does not provide it; a null core stands for all parts.
+ */
+public record CheckResult(SolverStatus status, Map<String, String> model, BitSet core) {
+
+    // The name of the IP variable of a key in a model.
+    public static String ipVariable(String key) {
+        return key + "_bv";
+    }
+
+    public static CheckResult sat(Map<String, String> model) {
+        return new CheckResult(SolverStatus.SAT, model, null);
+    }
+
+    public static CheckResult unsat(BitSet core) {
+        return new CheckResult(SolverStatus.UNSAT, null, core);
+    }
+
+    public static CheckResult unknown() {
+        return new CheckResult(SolverStatus.UNKNOWN, null, null);
+    }
+
+    public static CheckResult of(SolverStatus status) {
+        return new CheckResult(status, null, null);
+    }
+}
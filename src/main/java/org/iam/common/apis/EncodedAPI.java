@@ -42,8 +42,11 @@ public interface EncodedAPI<T> {
 
     T not(GrammarlyAPI<T> expr);
 
+    // Conservative on UNKNOWN: a formula the solver gave up on counts as satisfiable.
     Boolean check(T expr);
 
+    SolverStatus checkStatus(T expr);
+
     Boolean checkIntersection(List<T> exprs);
 
     Boolean greaterThan(T lhs, T rhs);
@@ -54,6 +57,33 @@ public interface EncodedAPI<T> {
 
     Boolean greaterEquals(VarKey key, String lhs, String rhs);
 
+    // Incremental session: the base formula stays asserted until it is replaced or cleared,
+    // so that repeated queries against the same policy do not re-assert it every time.
+    void setBase(T expr);
+
+    void clearBase();
+
+    // Check (base AND expr); behaves like check(expr) when no base is set.
+    Boolean checkWithBase(T expr);
+
+    SolverStatus checkStatusWithBase(T expr);
+
+    // Check (base AND all parts), additionally returning a model of a SAT answer and an unsatisfiable
+    // subset of the parts (an unsat core over the assumptions) of an UNSAT answer where the backend has them.
+    CheckResult checkPartsWithBase(List<T> parts);
+
+    // Structural identity of an expression within this encoder's context (Z3 AST id, CVC5 term id):
+    // structurally equal expressions share the id as long as one of them is alive.
+    long exprId(T expr);
+
+    // A fresh encoder of the same backend with its own context and solver. Encoders are not
+    // thread-safe, so every worker thread has to fork its own.
+    EncodedAPI<T> fork();
+
+    // Release the native resources held by the encoder.
+    default void close() {
+    }
+
     // TODO: Maybe there are more methods whose parameters are String or GrammarlyAPI<T> waiting to be added.
 
 }
@@ -0,0 +1,47 @@
+package org.iam.common.apis;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Remembers the expressions a GrammarlyAPI object was encoded to, one per encoder that asked (compared by
+ * identity). An object shared by several encoders (e.g. parallel mining workers, each owning its own solver
+ * context) thus never hands out an expression of a foreign context, and every encoder encodes it once.
+ * Encoders are held weakly, so the entries of closed and dropped workers go away with them.
+ *
+ * @param <T> The expression type of the underlying solver (Z3: BoolExpr, CVC5: Term)
+ */
+public final class EncodingCache<T> {
+
+    private record Entry<T>(WeakReference<EncodedAPI<T>> owner, T expr) {
+    }
+
+    // Copy-on-write: lookups read without locking, only a new encoder takes the lock.
+    private volatile List<Entry<T>> entries = List.of();
+
+    public T get(EncodedAPI<T> helper, Function<EncodedAPI<T>, T> encoder) {
+        for (Entry<T> entry : this.entries) {
+            if (entry.owner().get() == helper) {
+                return entry.expr();
+            }
+        }
+        T expr = encoder.apply(helper);
+        synchronized (this) {
+            List<Entry<T>> updated = new ArrayList<>(this.entries.size() + 1);
+            for (Entry<T> entry : this.entries) {
+                EncodedAPI<T> owner = entry.owner().get();
+                if (owner == helper) {
+                    return entry.expr();
+                }
+                if (owner != null) {
+                    updated.add(entry);
+                }
+            }
+            updated.add(new Entry<>(new WeakReference<>(helper), expr));
+            this.entries = List.copyOf(updated);
+        }
+        return expr;
+    }
+}
@@ -0,0 +1,15 @@
+package org.iam.common.apis;
+
+/**
+ * Bounds of every single solver query; 0 means unbounded.
+ *
+ * @param timeoutMillis wall-clock time per query in milliseconds
+ * @param resourceLimit the solver's deterministic resource limit per query (Z3 rlimit, CVC5 rlimit-per)
+ */
+public record SolverLimits(int timeoutMillis, int resourceLimit) {
+    public static final SolverLimits NONE = new SolverLimits(0, 0);
+
+    public boolean isBounded() {
+        return timeoutMillis > 0 || resourceLimit > 0;
+    }
+}
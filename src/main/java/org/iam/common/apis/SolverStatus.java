@@ -0,0 +1,11 @@
+package org.iam.common.apis;
+
+/**
+ * The outcome of a satisfiability check. UNKNOWN is returned when the solver gives up,
+ * e.g. because the time or resource limit of the query was hit.
+ */
+public enum SolverStatus {
+    SAT,
+    UNSAT,
+    UNKNOWN
+}
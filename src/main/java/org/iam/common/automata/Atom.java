@@ -0,0 +1,31 @@
+package org.iam.common.automata;
+
+import org.iam.common.IpRangeSet;
+
+/**
+ * An atomic predicate on one variable, the decision variable of a BDD node.
+ * String and IP variables of the same name are distinct, as with the SMT encoders.
+ */
+public sealed interface Atom permits Atom.StringAtom, Atom.IpAtom {
+
+    String variable();
+
+    enum StringKind {
+        PATTERN,
+        LITERAL,
+        LITERAL_IGNORE_CASE
+    }
+
+    record StringAtom(String variable, StringKind kind, String text) implements Atom {
+        public Glob glob() {
+            return switch (kind) {
+                case PATTERN -> Glob.ofPattern(text);
+                case LITERAL -> Glob.ofLiteral(text);
+                case LITERAL_IGNORE_CASE -> Glob.ofLiteralIgnoreCase(text);
+            };
+        }
+    }
+
+    record IpAtom(String variable, IpRangeSet range) implements Atom {
+    }
+}
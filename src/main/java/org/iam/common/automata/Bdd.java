@@ -0,0 +1,249 @@
+package org.iam.common.automata;
+
+import org.iam.common.IpRangeSet;
+import org.iam.common.apis.CheckResult;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe manager of reduced ordered BDDs over theory atoms. The atoms are ordered by the
+ * index they get when first seen. The BDD alone treats atoms as independent propositions; their
+ * theory (strings matching globs, addresses lying in ranges) is only taken into account by
+ * findModel, which looks for a path to TRUE whose atoms are jointly satisfiable.
+ * All tables are concurrent maps, so any number of threads may build and check formulas at once.
+ * The unique table holds its nodes weakly, so nodes no formula in use reaches are collected, and the
+ * memo tables are dropped as a whole once they reach CACHE_LIMIT entries, as a BDD package's computed
+ * table overwrites its entries; the manager thus stays bounded by the formulas still in use.
+ */
+public final class Bdd {
+    // Entries of each memo table before it is cleared.
+    public static final int CACHE_LIMIT = 1 << 20;
+
+    public final BddNode FALSE = new BddNode(0, BddNode.TERMINAL, null, null);
+    public final BddNode TRUE = new BddNode(1, BddNode.TERMINAL, null, null);
+
+    private enum Op {
+        AND,
+        OR
+    }
+
+    private record NodeKey(int var, int low, int high) {
+    }
+
+    private record OpKey(Op op, int lhs, int rhs) {
+    }
+
+    private record StringConstraints(List<Glob> positive, List<Glob> negative) {
+    }
+
+    // An entry of the unique table; its key lets the entry be removed once the node is collected.
+    private static final class NodeRef extends WeakReference<BddNode> {
+        private final NodeKey key;
+
+        private NodeRef(BddNode node, NodeKey key, ReferenceQueue<BddNode> queue) {
+            super(node, queue);
+            this.key = key;
+        }
+    }
+
+    private final AtomicInteger nextNodeId = new AtomicInteger(2);
+    private final AtomicInteger nextAtomIndex = new AtomicInteger();
+    private final Map<NodeKey, NodeRef> unique = new ConcurrentHashMap<>();
+    private final ReferenceQueue<BddNode> collected = new ReferenceQueue<>();
+    private final Map<Atom, Integer> atomIndex = new ConcurrentHashMap<>();
+    private final Map<Integer, Atom> atoms = new ConcurrentHashMap<>();
+    private final Map<Atom, Glob> globs = new ConcurrentHashMap<>();
+    private final Map<OpKey, BddNode> applyCache = new ConcurrentHashMap<>();
+    private final Map<BddNode, BddNode> notCache = new ConcurrentHashMap<>();
+    private final Map<StringConstraints, Optional<String>> witnesses = new ConcurrentHashMap<>();
+
+    public BddNode atom(Atom atom) {
+        int var = atomIndex.computeIfAbsent(atom, a -> {
+            int index = nextAtomIndex.getAndIncrement();
+            atoms.put(index, a);
+            return index;
+        });
+        return mk(var, FALSE, TRUE);
+    }
+
+    public int nodeCount() {
+        return unique.size() + 2;
+    }
+
+    public BddNode and(BddNode lhs, BddNode rhs) {
+        return apply(Op.AND, lhs, rhs);
+    }
+
+    public BddNode or(BddNode lhs, BddNode rhs) {
+        return apply(Op.OR, lhs, rhs);
+    }
+
+    public BddNode not(BddNode node) {
+        if (node == TRUE) {
+            return FALSE;
+        }
+        if (node == FALSE) {
+            return TRUE;
+        }
+        BddNode cached = notCache.get(node);
+        if (cached == null) {
+            cached = mk(node.var, not(node.low), not(node.high));
+            limit(notCache);
+            notCache.putIfAbsent(node, cached);
+            notCache.putIfAbsent(cached, node);
+        }
+        return cached;
+    }
+
+    private static void limit(Map<?, ?> cache) {
+        if (cache.size() >= CACHE_LIMIT) {
+            cache.clear();
+        }
+    }
+
+    private BddNode mk(int var, BddNode low, BddNode high) {
+        if (low == high) {
+            return low;
+        }
+        for (Reference<? extends BddNode> ref = collected.poll(); ref != null; ref = collected.poll()) {
+            NodeRef nodeRef = (NodeRef) ref;
+            unique.remove(nodeRef.key, nodeRef);
+        }
+        NodeKey key = new NodeKey(var, low.getId(), high.getId());
+        while (true) {
+            NodeRef ref = unique.get(key);
+            BddNode node = ref == null ? null : ref.get();
+            if (node != null) {
+                return node;
+            }
+            // Absent, or collected and not expunged yet: install a fresh node unless another thread did.
+            BddNode created = new BddNode(nextNodeId.getAndIncrement(), var, low, high);
+            NodeRef createdRef = new NodeRef(created, key, collected);
+            if (ref == null ? unique.putIfAbsent(key, createdRef) == null : unique.replace(key, ref, createdRef)) {
+                return created;
+            }
+        }
+    }
+
+    private BddNode apply(Op op, BddNode lhs, BddNode rhs) {
+        BddNode absorbing = op == Op.AND ? FALSE : TRUE;
+        BddNode neutral = op == Op.AND ? TRUE : FALSE;
+        if (lhs == absorbing || rhs == absorbing) {
+            return absorbing;
+        }
+        if (lhs == neutral || lhs == rhs) {
+            return rhs;
+        }
+        if (rhs == neutral) {
+            return lhs;
+        }
+        OpKey key = lhs.getId() < rhs.getId()
+                ? new OpKey(op, lhs.getId(), rhs.getId())
+                : new OpKey(op, rhs.getId(), lhs.getId());
+        BddNode cached = applyCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Atom indices grow from the root towards the leaves; terminals come last.
+        int var = Math.min(lhs.var, rhs.var);
+        BddNode lhsLow = lhs.var == var ? lhs.low : lhs;
+        BddNode lhsHigh = lhs.var == var ? lhs.high : lhs;
+        BddNode rhsLow = rhs.var == var ? rhs.low : rhs;
+        BddNode rhsHigh = rhs.var == var ? rhs.high : rhs;
+        BddNode result = mk(var, apply(op, lhsLow, rhsLow), apply(op, lhsHigh, rhsHigh));
+        limit(applyCache);
+        BddNode previous = applyCache.putIfAbsent(key, result);
+        return previous == null ? result : previous;
+    }
+
+    /**
+     * A satisfying assignment of the formula, mapping every variable on the chosen path to a value
+     * (an address in dotted form for IP atoms, under CheckResult.ipVariable of their variable), or null
+     * if the formula is unsatisfiable.
+     */
+    public Map<String, String> findModel(BddNode root) {
+        if (root == FALSE) {
+            return null;
+        }
+        Map<String, String> model = new TreeMap<>();
+        return search(root, new PathState(), model) ? model : null;
+    }
+
+    // The theory constraints collected along the current path, undone on backtracking.
+    private static class PathState {
+        final Map<String, List<Glob>> positive = new HashMap<>();
+        final Map<String, List<Glob>> negative = new HashMap<>();
+        final Map<String, IpRangeSet> ranges = new HashMap<>();
+    }
+
+    private boolean search(BddNode node, PathState state, Map<String, String> model) {
+        if (node == FALSE) {
+            return false;
+        }
+        if (node == TRUE) {
+            return buildModel(state, model);
+        }
+        Atom atom = atoms.get(node.var);
+        // Try the branch asserting the atom first: most atoms are the conditions of a policy.
+        for (boolean value : new boolean[]{true, false}) {
+            BddNode child = value ? node.high : node.low;
+            if (child == FALSE) {
+                continue;
+            }
+            if (atom instanceof Atom.IpAtom ipAtom) {
+                IpRangeSet previous = state.ranges.getOrDefault(ipAtom.variable(), IpRangeSet.ALL);
+                IpRangeSet next = value ? previous.intersect(ipAtom.range()) : previous.minus(ipAtom.range());
+                if (next.isEmpty()) {
+                    continue;
+                }
+                state.ranges.put(ipAtom.variable(), next);
+                boolean found = search(child, state, model);
+                state.ranges.put(ipAtom.variable(), previous);
+                if (found) {
+                    return true;
+                }
+            } else {
+                Atom.StringAtom stringAtom = (Atom.StringAtom) atom;
+                Map<String, List<Glob>> side = value ? state.positive : state.negative;
+                List<Glob> list = side.computeIfAbsent(stringAtom.variable(), v -> new ArrayList<>());
+                list.add(globs.computeIfAbsent(stringAtom, a -> stringAtom.glob()));
+                boolean found = witness(state, stringAtom.variable()) != null && search(child, state, model);
+                list.remove(list.size() - 1);
+                if (found) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean buildModel(PathState state, Map<String, String> model) {
+        Set<String> variables = new HashSet<>(state.positive.keySet());
+        variables.addAll(state.negative.keySet());
+        for (String variable : variables) {
+            model.put(variable, witness(state, variable));
+        }
+        for (Map.Entry<String, IpRangeSet> entry : state.ranges.entrySet()) {
+            model.put(CheckResult.ipVariable(entry.getKey()), IpRangeSet.longToIp(entry.getValue().first()));
+        }
+        return true;
+    }
+
+    private String witness(PathState state, String variable) {
+        StringConstraints constraints = new StringConstraints(
+                List.copyOf(state.positive.getOrDefault(variable, List.of())),
+                List.copyOf(state.negative.getOrDefault(variable, List.of())));
+        Optional<String> witness = witnesses.get(constraints);
+        if (witness == null) {
+            witness = Optional.ofNullable(StringTheory.witness(constraints.positive(), constraints.negative()));
+            limit(witnesses);
+            witnesses.put(constraints, witness);
+        }
+        return witness.orElse(null);
+    }
+}
@@ -0,0 +1,38 @@
+package org.iam.common.automata;
+
+/**
+ * A node of a reduced ordered BDD. Nodes are hash-consed by their Bdd, so structurally equal
+ * formulas are the same object and identity comparison is equivalence.
+ */
+public final class BddNode {
+    static final int TERMINAL = Integer.MAX_VALUE;
+
+    private final int id;
+    // Index of the atom decided at this node, TERMINAL for the two leaves.
+    final int var;
+    final BddNode low;
+    final BddNode high;
+
+    BddNode(int id, int var, BddNode low, BddNode high) {
+        this.id = id;
+        this.var = var;
+        this.low = low;
+        this.high = high;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isTerminal() {
+        return var == TERMINAL;
+    }
+
+    @Override
+    public String toString() {
+        if (isTerminal()) {
+            return id == 1 ? "true" : "false";
+        }
+        return "BddNode{id=" + id + ", atom=" + var + "}";
+    }
+}
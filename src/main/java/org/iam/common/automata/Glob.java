@@ -0,0 +1,110 @@
+package org.iam.common.automata;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * A string pattern as a sequence of tokens: any string ('*'), any single character ('?') or one
+ * character out of a set. Read as an NFA whose states are the token positions 0..length, where
+ * position length is accepting.
+ */
+public final class Glob {
+    private static final String STAR = null;
+    private static final String ANY = "";
+
+    // Per token: STAR, ANY, or the allowed characters.
+    private final String[] tokens;
+
+    private Glob(String[] tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * An IAM wildcard pattern as in EncodedAPI.mkReMatch; a bare "?" matches every non-empty string.
+     */
+    public static Glob ofPattern(String pattern) {
+        if (pattern.equals("?")) {
+            return new Glob(new String[]{ANY, STAR});
+        }
+        String[] tokens = new String[pattern.length()];
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            tokens[i] = c == '*' ? STAR : c == '?' ? ANY : String.valueOf(c);
+        }
+        return new Glob(tokens);
+    }
+
+    public static Glob ofLiteral(String literal) {
+        String[] tokens = new String[literal.length()];
+        for (int i = 0; i < literal.length(); i++) {
+            tokens[i] = String.valueOf(literal.charAt(i));
+        }
+        return new Glob(tokens);
+    }
+
+    public static Glob ofLiteralIgnoreCase(String literal) {
+        String[] tokens = new String[literal.length()];
+        for (int i = 0; i < literal.length(); i++) {
+            char lower = Character.toLowerCase(literal.charAt(i));
+            char upper = Character.toUpperCase(literal.charAt(i));
+            tokens[i] = lower == upper ? String.valueOf(lower) : "" + lower + upper;
+        }
+        return new Glob(tokens);
+    }
+
+    /**
+     * Adds every character this glob distinguishes to the alphabet.
+     */
+    void collectAlphabet(Set<Character> alphabet) {
+        for (String token : tokens) {
+            if (token != STAR && !token.isEmpty()) {
+                for (int i = 0; i < token.length(); i++) {
+                    alphabet.add(token.charAt(i));
+                }
+            }
+        }
+    }
+
+    BitSet start() {
+        BitSet start = new BitSet(tokens.length + 1);
+        start.set(0);
+        return closure(start);
+    }
+
+    boolean accepts(BitSet positions) {
+        return positions.get(tokens.length);
+    }
+
+    BitSet step(BitSet positions, char c) {
+        BitSet next = new BitSet(tokens.length + 1);
+        for (int i = positions.nextSetBit(0); i >= 0 && i < tokens.length; i = positions.nextSetBit(i + 1)) {
+            String token = tokens[i];
+            if (token == STAR) {
+                next.set(i);
+            } else if (token.isEmpty() || token.indexOf(c) >= 0) {
+                next.set(i + 1);
+            }
+        }
+        return closure(next);
+    }
+
+    private BitSet closure(BitSet positions) {
+        for (int i = positions.nextSetBit(0); i >= 0 && i < tokens.length; i = positions.nextSetBit(i + 1)) {
+            if (tokens[i] == STAR) {
+                positions.set(i + 1);
+            }
+        }
+        return positions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Glob other && Arrays.equals(tokens, other.tokens);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(tokens);
+    }
+}
@@ -0,0 +1,104 @@
+package org.iam.common.automata;
+
+import java.util.*;
+
+/**
+ * Decides conjunctions of string constraints on one variable: the value has to match every positive
+ * glob and none of the negative ones. The globs are run in lockstep (subset construction per glob)
+ * over the characters they mention plus one character none of them mentions, which stands for all
+ * others; a breadth-first search finds a shortest witness or exhausts the finite product.
+ */
+public final class StringTheory {
+    private static final String PREFERRED_FRESH = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+    private StringTheory() {
+    }
+
+    private record State(List<BitSet> positions) {
+    }
+
+    /**
+     * @return a string matching all positive and no negative globs, or null if there is none.
+     */
+    public static String witness(List<Glob> positive, List<Glob> negative) {
+        List<Glob> globs = new ArrayList<>(positive);
+        globs.addAll(negative);
+        int positiveCount = positive.size();
+        char[] alphabet = alphabet(globs);
+
+        List<BitSet> startPositions = new ArrayList<>(globs.size());
+        for (Glob glob : globs) {
+            startPositions.add(glob.start());
+        }
+        State start = new State(startPositions);
+
+        Map<State, State> parent = new HashMap<>();
+        Map<State, Character> via = new HashMap<>();
+        Deque<State> queue = new ArrayDeque<>();
+        parent.put(start, null);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            State state = queue.poll();
+            if (isAccepting(state, globs, positiveCount)) {
+                return reconstruct(state, parent, via);
+            }
+            for (char c : alphabet) {
+                List<BitSet> next = new ArrayList<>(globs.size());
+                boolean dead = false;
+                for (int i = 0; i < globs.size() && !dead; i++) {
+                    BitSet positions = globs.get(i).step(state.positions().get(i), c);
+                    dead = i < positiveCount && positions.isEmpty();
+                    next.add(positions);
+                }
+                State nextState = new State(next);
+                if (!dead && !parent.containsKey(nextState)) {
+                    parent.put(nextState, state);
+                    via.put(nextState, c);
+                    queue.add(nextState);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAccepting(State state, List<Glob> globs, int positiveCount) {
+        for (int i = 0; i < globs.size(); i++) {
+            if (globs.get(i).accepts(state.positions().get(i)) != (i < positiveCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String reconstruct(State state, Map<State, State> parent, Map<State, Character> via) {
+        StringBuilder witness = new StringBuilder();
+        for (State current = state; parent.get(current) != null; current = parent.get(current)) {
+            witness.append(via.get(current));
+        }
+        return witness.reverse().toString();
+    }
+
+    private static char[] alphabet(List<Glob> globs) {
+        Set<Character> chars = new LinkedHashSet<>();
+        for (Glob glob : globs) {
+            glob.collectAlphabet(chars);
+        }
+        char fresh = 0;
+        for (int i = 0; i < PREFERRED_FRESH.length(); i++) {
+            if (!chars.contains(PREFERRED_FRESH.charAt(i))) {
+                fresh = PREFERRED_FRESH.charAt(i);
+                break;
+            }
+        }
+        while (fresh == 0 || chars.contains(fresh)) {
+            fresh++;
+        }
+        char[] alphabet = new char[chars.size() + 1];
+        int i = 0;
+        for (char c : chars) {
+            alphabet[i++] = c;
+        }
+        alphabet[i] = fresh;
+        return alphabet;
+    }
+}
@@ -1,90 +1,173 @@
 package org.iam.common.basetypes;
 
+import org.iam.common.IpRangeSet;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.EncodingCache;
 import org.iam.common.apis.GrammarlyAPI;
 import org.iam.common.vars.VarKey;
 import org.iam.core.KvRelations;
+import org.iam.core.ValueDictionary;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * An immutable finding: one interned value ID per key, indexed by VarKey.ordinal() (-1 for keys the
+ * finding does not constrain). All findings of one mining run share the ValueDictionary of its
+ * KvRelations, the hash is computed once on construction.
+ * A finding also remembers the key it was refined on last. That only steers refine and is not part
+ * of its identity.
+ */
 public class Finding<T> implements GrammarlyAPI<T> {
+    private static final VarKey[] KEYS = VarKey.values();
+    private static final int ABSENT = -1;
 
-    private Map<VarKey, String> finding = null;
-    private T encodedExpr = null;
+    private final ValueDictionary dictionary;
+    private final int[] values;
+    private final int hash;
+    // Ordinal of the key refined last; refine only continues from there.
+    private final int lastRefinedKey;
+    private final EncodingCache<T> encodedExpr;
 
-    public Finding(Policy<T> policy) {
-        this.finding = new HashMap<>();
+    /**
+     * The root finding of the policy. The dictionary is read-only by now, so the root values must have been
+     * interned when KvRelations was built.
+     */
+    public Finding(Policy<T> policy, ValueDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.values = emptyValues();
         for (VarKey key : policy.keySet()) {
-            this.finding.putIfAbsent(key,
-                    switch (key) {
-                        case AWS_SOURCE_IP -> "0.0.0.0/0";
-                        default -> "*";
-                    });
+            String value = switch (key) {
+                case AWS_SOURCE_IP -> "0.0.0.0/0";
+                default -> "*";
+            };
+            int id = dictionary.id(key, value);
+            if (id == ABSENT) {
+                throw new IllegalArgumentException("Value '" + value + "' of " + key + " is not in the dictionary");
+            }
+            this.values[key.ordinal()] = id;
         }
+        this.hash = Arrays.hashCode(this.values);
+        this.lastRefinedKey = 0;
+        this.encodedExpr = new EncodingCache<>();
     }
 
     public Finding(Finding<T> other) {
-        this.finding = other.finding;
+        this.dictionary = other.dictionary;
+        this.values = other.values;
+        this.hash = other.hash;
+        this.lastRefinedKey = other.lastRefinedKey;
         this.encodedExpr = other.encodedExpr;
     }
 
-    public Finding(Map<VarKey, String> finding) {
-        this.finding = finding;
-        this.encodedExpr = null;
+    // Takes ownership of values.
+    private Finding(ValueDictionary dictionary, int[] values, int lastRefinedKey) {
+        this.dictionary = dictionary;
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+        this.lastRefinedKey = lastRefinedKey;
+        this.encodedExpr = new EncodingCache<>();
+    }
+
+    private static int[] emptyValues() {
+        int[] values = new int[KEYS.length];
+        Arrays.fill(values, ABSENT);
+        return values;
     }
 
+    /**
+     * A fresh map of the finding's values, e.g. for printing. Hot paths use valueId/value instead.
+     */
     public Map<VarKey, String> getFinding() {
+        Map<VarKey, String> finding = new EnumMap<>(VarKey.class);
+        for (VarKey key : KEYS) {
+            if (this.values[key.ordinal()] != ABSENT) {
+                finding.put(key, value(key));
+            }
+        }
         return finding;
     }
 
+    public ValueDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public boolean hasKey(VarKey key) {
+        return this.values[key.ordinal()] != ABSENT;
+    }
+
+    /**
+     * @return the interned ID of the key's value, or -1 if the finding does not constrain the key.
+     */
+    public int valueId(VarKey key) {
+        return this.values[key.ordinal()];
+    }
+
+    public String value(VarKey key) {
+        int id = this.values[key.ordinal()];
+        return id == ABSENT ? null : this.dictionary.value(key, id);
+    }
+
+    public List<VarKey> keys() {
+        List<VarKey> keys = new ArrayList<>(KEYS.length);
+        for (VarKey key : KEYS) {
+            if (this.values[key.ordinal()] != ABSENT) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
     public T reduce(KvRelations relations, EncodedAPI<T> helper) {
-        List<T> keyIdomExprs = this.finding.entrySet().stream().map(
-                entry -> {
-                    VarKey key = entry.getKey();
-                    String value = entry.getValue();
-                    Set<String> idomValues = relations.idom(key, value);
-                    T idomExpr;
-                    if (idomValues == null || idomValues.isEmpty()) {
-                        idomExpr = null;
-                    } else {
-                        List<T> idomExprs = idomValues.stream().map(
-                                idomValue -> {
-                                    if (idomValue == null) {
-                                        return helper.mkFalse();
-                                    }
-                                    return switch (key) {
-                                        case AWS_SOURCE_IP ->
-                                                helper.mkIpMatch(key.toString(), idomValue);
-                                        default ->
-                                                helper.mkReMatch(key.toString(), idomValue);
-                                    };
-                                }).toList();
-                        idomExpr = helper.or(idomExprs);
-                    }
-                    T reducedExpr = switch (key) {
-                        case AWS_SOURCE_IP ->
-                                helper.mkIpMatch(key.toString(), value);
-                        default ->
-                                helper.mkReMatch(key.toString(), value);
-                    };
-                    if (idomExpr != null) {
-                        reducedExpr = helper.and(Arrays.asList(reducedExpr, helper.not(idomExpr)));
-                    }
-                    return reducedExpr;
-                }).toList();
-        return helper.and(keyIdomExprs);
+        return helper.and(reduceParts(relations, helper));
+    }
+
+    /**
+     * The conjuncts of reduce, one per key in the order of keys(): the key's value minus its immediate
+     * dominators. A part only depends on the key's value, so refinements on other keys share it.
+     */
+    public List<T> reduceParts(KvRelations relations, EncodedAPI<T> helper) {
+        List<T> keyIdomExprs = new ArrayList<>();
+        for (VarKey key : keys()) {
+            String value = value(key);
+            Set<String> idomValues = relations.idom(key, value);
+            if (key == VarKey.AWS_SOURCE_IP && !idomValues.isEmpty()
+                    && IpRangeSet.ofCidrs(idomValues).contains(IpRangeSet.ofCidr(value))) {
+                // The immediate sub-ranges tile the whole range, nothing is left for this key.
+                keyIdomExprs.add(helper.mkFalse());
+                continue;
+            }
+            T reducedExpr = match(helper, key, value);
+            if (!idomValues.isEmpty()) {
+                List<T> idomExprs = idomValues.stream().map(idomValue -> match(helper, key, idomValue)).toList();
+                reducedExpr = helper.and(Arrays.asList(reducedExpr, helper.not(helper.or(idomExprs))));
+            }
+            keyIdomExprs.add(reducedExpr);
+        }
+        return keyIdomExprs;
     }
 
+    /**
+     * The immediate refinements in set-enumeration order: only keys at or after the one refined last are
+     * refined, and a value only towards the idoms whose canonical parent it is. Every finding below the
+     * root is thus generated from exactly one parent, whatever order the keys are refined in.
+     */
     public Set<Finding<T>> refine(KvRelations relations) {
         Set<Finding<T>> refinements = new HashSet<>();
-        for (VarKey key : this.finding.keySet()) {
-            Set<String> values = relations.idom(key, this.finding.get(key));
-            for (String idomValue : values) {
-                Map<VarKey, String> refinedFinding = new HashMap<>(this.finding);
-                refinedFinding.put(key, idomValue);
-                Finding<T> newFinding = new Finding<>(refinedFinding);
-                refinements.add(newFinding);
+        for (int ordinal = lastRefinedKey; ordinal < KEYS.length; ordinal++) {
+            VarKey key = KEYS[ordinal];
+            int id = this.values[ordinal];
+            if (id == ABSENT) {
+                continue;
+            }
+            BitSet idoms = relations.idomIds(key, id);
+            for (int idom = idoms.nextSetBit(0); idom >= 0; idom = idoms.nextSetBit(idom + 1)) {
+                if (relations.canonicalParent(key, idom) != id) {
+                    continue;
+                }
+                int[] refinedValues = this.values.clone();
+                refinedValues[ordinal] = idom;
+                refinements.add(new Finding<>(this.dictionary, refinedValues, ordinal));
             }
         }
         return refinements;
@@ -92,24 +175,30 @@ public class Finding<T> implements GrammarlyAPI<T> {
 
     @Override
     public T encode(EncodedAPI<T> helper) {
-        if (this.finding == null || this.finding.isEmpty()) {
+        if (keys().isEmpty()) {
             return helper.mkFalse();
         }
 
-        if (this.encodedExpr == null) {
-            List<T> exprs = this.finding.entrySet().stream()
-                    .map(e -> helper.mkReMatch(e.getKey().toString(), e.getValue()))
-                    .toList();
-            this.encodedExpr = helper.and(exprs);
-        }
-        return this.encodedExpr;
+        return this.encodedExpr.get(helper, this::encodeValues);
+    }
+
+    private T encodeValues(EncodedAPI<T> helper) {
+        List<T> exprs = keys().stream().map(key -> match(helper, key, value(key))).toList();
+        return helper.and(exprs);
+    }
+
+    private static <T> T match(EncodedAPI<T> helper, VarKey key, String value) {
+        return switch (key) {
+            case AWS_SOURCE_IP -> helper.mkIpMatch(key.toString(), value);
+            default -> helper.mkReMatch(key.toString(), value);
+        };
     }
 
     @Override
     public String toString() {
         return "Finding{" +
-                "finding=" + finding.entrySet().stream()
-                .map(e -> e.getKey().toString() + "=" + e.getValue())
+                "finding=" + keys().stream()
+                .map(key -> key.toString() + "=" + value(key))
                 .collect(Collectors.joining(", ")) +
                 '}';
     }
@@ -118,11 +207,12 @@ public class Finding<T> implements GrammarlyAPI<T> {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Finding<?> f)) return false;
-        return Objects.equals(finding, f.finding);
+        // Value IDs are only comparable within one dictionary.
+        return this.hash == f.hash && this.dictionary == f.dictionary && Arrays.equals(this.values, f.values);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(finding);
+        return hash;
     }
 }
@@ -26,10 +26,18 @@ public class JsonFindings {
     );
 
     public JsonFindings(Set<Finding<?>> findingSet) {
+        this(findingSet, Collections.emptySet());
+    }
+
+    /**
+     * @param approximateSet the findings among findingSet that are only approximate, e.g. because the
+     *                       solver hit a limit; they are flagged in the output.
+     */
+    public JsonFindings(Set<Finding<?>> findingSet, Set<Finding<?>> approximateSet) {
         this.findings = new HashSet<>();
         if (findingSet != null) {
             for (Finding<?> finding : findingSet) {
-                this.findings.add(processFinding(finding));
+                this.findings.add(processFinding(finding, approximateSet.contains(finding)));
             }
         }
     }
@@ -37,11 +45,11 @@ public class JsonFindings {
     public JsonFindings(Finding<?> finding) {
         this.findings = new HashSet<>();
         if (finding != null) {
-            this.findings.add(processFinding(finding));
+            this.findings.add(processFinding(finding, false));
         }
     }
 
-    private JsonFinding processFinding(Finding<?> finding) {
+    private JsonFinding processFinding(Finding<?> finding, boolean approximate) {
         Map<String, Set<String>> principalMap = new HashMap<>();
         Map<String, Set<String>> conditionMap = new HashMap<>();
         Set<String> actions = new HashSet<>();
@@ -70,7 +78,7 @@ public class JsonFindings {
             }
         }
 
-        return new JsonFindings.JsonFinding(principalMap, actions, resources, conditionMap);
+        return new JsonFindings.JsonFinding(principalMap, actions, resources, conditionMap, approximate);
     }
 
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
@@ -87,14 +95,20 @@ public class JsonFindings {
         @JsonProperty("Condition")
         private final Map<String, Set<String>> condition;
 
+        // Only written for approximate findings.
+        @JsonProperty("Approximate")
+        private final Boolean approximate;
+
         public JsonFinding(Map<String, Set<String>> principal,
                            Set<String> actions,
                            Set<String> resources,
-                           Map<String, Set<String>> condition) {
+                           Map<String, Set<String>> condition,
+                           boolean approximate) {
             this.principal = principal;
             this.actions = actions;
             this.resources = resources;
             this.condition = condition;
+            this.approximate = approximate ? Boolean.TRUE : null;
         }
     }
 
@@ -2,6 +2,7 @@ package org.iam.common.basetypes;
 
 import com.fasterxml.jackson.annotation.*;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.EncodingCache;
 import org.iam.common.apis.GrammarlyAPI;
 import org.iam.common.vars.VarEffect;
 import org.iam.common.vars.VarKey;
@@ -21,7 +22,7 @@ public class Policy<T> implements GrammarlyAPI<T> {
     private Map<VarKey, Set<String>> kvMap = null;
 
     @JsonIgnore
-    private T encodedExpr = null;
+    private EncodingCache<T> encodedExpr = new EncodingCache<>();
 
     public Policy() {
     }
@@ -87,25 +88,25 @@ public class Policy<T> implements GrammarlyAPI<T> {
             throw new IllegalStateException("No valid statements in Policy, a parsing error may occurred.");
         }
 
-        if (this.encodedExpr == null) {
-            List<T> allowExprs = statements.stream()
-                    .filter(s -> s.getEffect() == VarEffect.Allow)
-                    .map(s -> s.encode(helper))
-                    .toList();
-            List<T> denyExprs = statements.stream()
-                    .filter(s -> s.getEffect() == VarEffect.Deny)
-                    .map(s -> s.encode(helper))
-                    .toList();
-            // allowed = allow1 OR allow2 OR ...
-            // denied = deny1 OR deny2 OR ...
-            // allowed AND NOT denied
-            this.encodedExpr = helper.and(List.of(
-                    helper.or(allowExprs),
-                    helper.not(helper.or(denyExprs))
-            ));
-        }
+        return this.encodedExpr.get(helper, this::encodeStatements);
+    }
 
-        return this.encodedExpr;
+    private T encodeStatements(EncodedAPI<T> helper) {
+        List<T> allowExprs = statements.stream()
+                .filter(s -> s.getEffect() == VarEffect.Allow)
+                .map(s -> s.encode(helper))
+                .toList();
+        List<T> denyExprs = statements.stream()
+                .filter(s -> s.getEffect() == VarEffect.Deny)
+                .map(s -> s.encode(helper))
+                .toList();
+        // allowed = allow1 OR allow2 OR ...
+        // denied = deny1 OR deny2 OR ...
+        // allowed AND NOT denied
+        return helper.and(List.of(
+                helper.or(allowExprs),
+                helper.not(helper.or(denyExprs))
+        ));
     }
 
     @Override
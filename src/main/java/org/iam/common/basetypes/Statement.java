@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.EncodingCache;
 import org.iam.common.apis.GrammarlyAPI;
 import org.iam.common.vars.VarEffect;
 import org.iam.common.vars.VarKey;
@@ -32,7 +33,7 @@ public class Statement<T> implements GrammarlyAPI<T> {
     private Set<Condition<T>> condition = null;
 
     @JsonIgnore
-    private T cachedExpr = null;
+    private EncodingCache<T> cachedExpr = new EncodingCache<>();
 
     public Statement() {
     }
@@ -105,26 +106,27 @@ public class Statement<T> implements GrammarlyAPI<T> {
 
     @Override
     public T encode(EncodedAPI<T> helper) {
-        if (this.cachedExpr == null) {
-            List<T> exprs = new ArrayList<>();
-            exprs.add(encodePrincipals(helper));
-            exprs.add(encodeActions(helper));
-            exprs.add(encodeResources(helper));
-            if (this.condition != null && !this.condition.isEmpty()) {
-                exprs.addAll(
-                        condition.stream()
-                                .map(c -> c.encode(helper))
-                                .toList());
-            }
-
-            T allowExpr = helper.and(exprs);
-            if (this.effect == VarEffect.Allow) {
-                this.cachedExpr = allowExpr;
-            } else {
-                this.cachedExpr = helper.not(allowExpr);
-            }
+        return this.cachedExpr.get(helper, this::encodeStatement);
+    }
+
+    private T encodeStatement(EncodedAPI<T> helper) {
+        List<T> exprs = new ArrayList<>();
+        exprs.add(encodePrincipals(helper));
+        exprs.add(encodeActions(helper));
+        exprs.add(encodeResources(helper));
+        if (this.condition != null && !this.condition.isEmpty()) {
+            exprs.addAll(
+                    condition.stream()
+                            .map(c -> c.encode(helper))
+                            .toList());
+        }
+
+        T allowExpr = helper.and(exprs);
+        if (this.effect == VarEffect.Allow) {
+            return allowExpr;
+        } else {
+            return helper.not(allowExpr);
         }
-        return this.cachedExpr;
     }
 
     private T encodePrincipals(EncodedAPI<T> helper) {
@@ -2,30 +2,97 @@ package org.iam.common.reduce;
 
 import org.iam.common.apis.EncodedAPI;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+/**
+ * A formula of one encoder together with what is known about its emptiness. The emptiness is decided at
+ * most once per var; vars derived by union/inter/minus share the decision map of their operand, so
+ * structurally equal formulas share one decision. Obvious cases (an empty operand, the difference from
+ * an equal var or from a var the formula was derived from) are answered without building a formula.
+ */
 public class DynamicVar<T> {
+    private enum Emptiness {
+        UNKNOWN,
+        EMPTY,
+        NON_EMPTY
+    }
+
     private final EncodedAPI<T> encoder;
     private final T value;
+    // Decisions by formula, shared by the vars derived from one another; may be null.
+    private final Map<T, Boolean> decisions;
+    // Formulas known to contain this one: the operands of the inter/minus it was built by.
+    private final List<T> supersets;
+    private Emptiness emptiness;
 
     public DynamicVar(EncodedAPI<T> encoder, T value) {
+        this(encoder, value, null);
+    }
+
+    public DynamicVar(EncodedAPI<T> encoder, T value, Map<T, Boolean> decisions) {
+        this(encoder, value, decisions, List.of(), Emptiness.UNKNOWN);
+    }
+
+    private DynamicVar(EncodedAPI<T> encoder, T value, Map<T, Boolean> decisions, List<T> supersets,
+                       Emptiness emptiness) {
         this.encoder = encoder;
         this.value = value;
+        this.decisions = decisions;
+        this.supersets = supersets;
+        this.emptiness = emptiness;
     }
 
     public DynamicVar<T> union(DynamicVar<T> other) {
+        if (this.emptiness == Emptiness.EMPTY) {
+            return other;
+        }
+        if (other.emptiness == Emptiness.EMPTY || this.value.equals(other.value)) {
+            return this;
+        }
         T unionTerm = encoder.or(List.of(this.value, other.value));
-        return new DynamicVar<>(encoder, unionTerm);
+        Emptiness unionEmptiness = this.emptiness == Emptiness.NON_EMPTY || other.emptiness == Emptiness.NON_EMPTY
+                ? Emptiness.NON_EMPTY : Emptiness.UNKNOWN;
+        return new DynamicVar<>(encoder, unionTerm, decisions, List.of(), unionEmptiness);
     }
 
     public DynamicVar<T> inter(DynamicVar<T> other) {
+        if (this.emptiness == Emptiness.EMPTY || this.isSubsetOf(other)) {
+            return this;
+        }
+        if (other.emptiness == Emptiness.EMPTY || other.isSubsetOf(this)) {
+            return other;
+        }
         T interTerm = encoder.and(List.of(this.value, other.value));
-        return new DynamicVar<>(encoder, interTerm);
+        return new DynamicVar<>(encoder, interTerm, decisions, List.of(this.value, other.value), Emptiness.UNKNOWN);
     }
 
     public DynamicVar<T> minus(DynamicVar<T> other) {
+        if (this.emptiness == Emptiness.EMPTY || other.emptiness == Emptiness.EMPTY) {
+            return this;
+        }
+        if (this.isSubsetOf(other)) {
+            return new DynamicVar<>(encoder, encoder.mkFalse(), decisions, List.of(), Emptiness.EMPTY);
+        }
         T minusTerm = encoder.and(List.of(this.value, encoder.not(other.value)));
-        return new DynamicVar<>(encoder, minusTerm);
+        return new DynamicVar<>(encoder, minusTerm, decisions, List.of(this.value), Emptiness.UNKNOWN);
+    }
+
+    // Syntactic containment only: equal formulas, or other is an operand this var was derived from.
+    private boolean isSubsetOf(DynamicVar<T> other) {
+        return this.value.equals(other.value) || this.supersets.contains(other.value);
+    }
+
+    /**
+     * Records that the var is known to be non-empty, e.g. from a check of the caller against a base.
+     */
+    public DynamicVar<T> assumeNonEmpty() {
+        this.emptiness = Emptiness.NON_EMPTY;
+        return this;
+    }
+
+    EncodedAPI<T> getEncoder() {
+        return encoder;
     }
 
     public T getValue() {
@@ -33,7 +100,13 @@ public class DynamicVar<T> {
     }
 
     public boolean isEmpty() {
-        return !encoder.check(value);
+        if (emptiness == Emptiness.UNKNOWN) {
+            boolean empty = decisions == null
+                    ? !encoder.check(value)
+                    : decisions.computeIfAbsent(value, term -> !encoder.check(term));
+            emptiness = empty ? Emptiness.EMPTY : Emptiness.NON_EMPTY;
+        }
+        return emptiness == Emptiness.EMPTY;
     }
 
     @Override
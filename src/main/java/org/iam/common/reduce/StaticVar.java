@@ -9,7 +9,8 @@ public class StaticVar<T> {
     private final Policy<T> policy;
     private final T forcedExpr; // Used for Logic True
     private final VarType varType;
-    private DynamicVar<T> cachedDynamicVar;
+    // Conversion for the first encoder asking; other encoders (e.g. forked workers) convert afresh.
+    private volatile DynamicVar<T> cachedDynamicVar;
 
     private StaticVar(Builder<T> builder) {
         this.finding = builder.finding;
@@ -73,9 +74,14 @@ public class StaticVar<T> {
         return false;
     }
 
+    /**
+     * The expression of the var in the encoder's context. A forced expression belongs to the encoder that
+     * built it and is handed out as it is.
+     */
     public DynamicVar<T> convert(EncodedAPI<T> encoder) {
-        if (cachedDynamicVar != null) {
-            return cachedDynamicVar;
+        DynamicVar<T> cached = this.cachedDynamicVar;
+        if (cached != null && cached.getEncoder() == encoder) {
+            return cached;
         }
 
         T value = switch (varType) {
@@ -84,8 +90,11 @@ public class StaticVar<T> {
             case EXPR -> forcedExpr;
         };
 
-        cachedDynamicVar = new DynamicVar<>(encoder, value);
-        return cachedDynamicVar;
+        DynamicVar<T> converted = new DynamicVar<>(encoder, value);
+        if (cached == null) {
+            this.cachedDynamicVar = converted;
+        }
+        return converted;
     }
 
     public Object getValue() {
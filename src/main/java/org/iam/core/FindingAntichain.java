@@ -0,0 +1,140 @@
+package org.iam.core;
+
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.basetypes.Finding;
+import org.iam.common.vars.VarKey;
+
+import java.util.*;
+
+/**
+ * The mined results: a set of pairwise incomparable findings.
+ * Findings are indexed by the value ID of every key, so "is anything >= f" only visits the findings whose
+ * value for the most selective key covers f's value, and "what does f cover" only those whose value is
+ * covered by f's. Adding a finding evicts every entry it covers. All operations are synchronized so the
+ * parallel miner can share one instance between its workers.
+ */
+public class FindingAntichain<T> {
+    private static final VarKey[] KEYS = VarKey.values();
+
+    private final KvRelations relations;
+    private final SubsumptionChecker subsumption;
+    private final Set<Finding<T>> findings = new HashSet<>();
+    private final Map<VarKey, Map<Integer, Set<Finding<T>>>> index = new EnumMap<>(VarKey.class);
+
+    public FindingAntichain(KvRelations relations, SubsumptionChecker subsumption) {
+        this.relations = relations;
+        this.subsumption = subsumption;
+    }
+
+    /**
+     * Whether some finding of the antichain is >= the given one.
+     */
+    public synchronized boolean isCovered(Finding<T> finding, EncodedAPI<T> encoder) {
+        if (findings.contains(finding)) {
+            return true;
+        }
+        for (Finding<T> candidate : candidates(finding, true)) {
+            if (subsumption.greaterEquals(candidate, finding, encoder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the finding unless it is covered, evicting every finding it covers.
+     *
+     * @return whether the finding was added.
+     */
+    public synchronized boolean add(Finding<T> finding, EncodedAPI<T> encoder) {
+        if (isCovered(finding, encoder)) {
+            return false;
+        }
+        for (Finding<T> candidate : candidates(finding, false)) {
+            if (subsumption.greaterEquals(finding, candidate, encoder)) {
+                remove(candidate);
+            }
+        }
+        findings.add(finding);
+        for (VarKey key : finding.keys()) {
+            index.computeIfAbsent(key, k -> new HashMap<>())
+                    .computeIfAbsent(relations.valueId(finding, key), k -> new HashSet<>())
+                    .add(finding);
+        }
+        return true;
+    }
+
+    public synchronized int size() {
+        return findings.size();
+    }
+
+    public synchronized Set<Finding<T>> toSet() {
+        return new HashSet<>(findings);
+    }
+
+    private void remove(Finding<T> finding) {
+        findings.remove(finding);
+        for (VarKey key : finding.keys()) {
+            Set<Finding<T>> bucket = index.getOrDefault(key, Collections.emptyMap())
+                    .get(relations.valueId(finding, key));
+            if (bucket != null) {
+                bucket.remove(finding);
+            }
+        }
+    }
+
+    /**
+     * Collects the findings that may cover (upward) or be covered by (downward) the given one, using the
+     * key whose matching buckets hold the fewest findings.
+     */
+    private List<Finding<T>> candidates(Finding<T> finding, boolean upward) {
+        List<Set<Finding<T>>> best = null;
+        int bestSize = Integer.MAX_VALUE;
+        for (VarKey key : KEYS) {
+            if (!finding.hasKey(key)) {
+                continue;
+            }
+            int id = relations.valueId(finding, key);
+            if (id < 0) {
+                continue;
+            }
+            Map<Integer, Set<Finding<T>>> buckets = index.getOrDefault(key, Collections.emptyMap());
+            List<Set<Finding<T>>> matched = new ArrayList<>();
+            int size = addBucket(buckets, id, matched);
+            size += addBuckets(buckets, upward ? relations.coveredByIds(key, id) : relations.containsIds(key, id), matched);
+            if (!upward) {
+                size += addBuckets(buckets, relations.equivalentIds(key, id), matched);
+            }
+            if (size < bestSize) {
+                best = matched;
+                bestSize = size;
+            }
+        }
+
+        if (best == null) {
+            return new ArrayList<>(findings);
+        }
+        List<Finding<T>> candidates = new ArrayList<>(bestSize);
+        for (Set<Finding<T>> bucket : best) {
+            candidates.addAll(bucket);
+        }
+        return candidates;
+    }
+
+    private int addBuckets(Map<Integer, Set<Finding<T>>> buckets, BitSet ids, List<Set<Finding<T>>> matched) {
+        int size = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            size += addBucket(buckets, id, matched);
+        }
+        return size;
+    }
+
+    private int addBucket(Map<Integer, Set<Finding<T>>> buckets, int id, List<Set<Finding<T>>> matched) {
+        Set<Finding<T>> bucket = buckets.get(id);
+        if (bucket == null || bucket.isEmpty()) {
+            return 0;
+        }
+        matched.add(bucket);
+        return bucket.size();
+    }
+}
@@ -1,20 +1,65 @@
 package org.iam.core;
 
-import org.iam.common.Z3Encoder;
+import org.iam.common.IpRangeSet;
+import org.iam.common.PatternContainment;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.basetypes.Finding;
 import org.iam.common.basetypes.Policy;
 import org.iam.common.vars.VarKey;
+import org.iam.utils.Parameter;
 
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
+/**
+ * The partial order between the values of every key. Values are interned to dense IDs by a
+ * ValueDictionary and every relation is a bitset row per value ID; the String based views handed out
+ * by idom/contains/coveredBy/equivalents are built once per row and never copied.
+ */
 public class KvRelations {
-    private Map<VarKey, Map<String, Set<String>>> allRelations;
-    private Map<VarKey, Map<String, Set<String>>> allIdoms;
+    private final ValueDictionary dictionary = new ValueDictionary();
+    private final Map<VarKey, KeyRelations> allRelations = new EnumMap<>(VarKey.class);
+    // Pairs the solver gave no definitive answer for, or was not asked about any more.
+    private int undecidedPairs = 0;
+
+    private static class KeyRelations {
+        // below[a] holds every b with a > b.
+        BitSet[] below;
+        // idoms[a] is the transitive reduction of below[a].
+        BitSet[] idoms;
+        // Distinct values denoting the same set of values (e.g. "a*" and "a**").
+        BitSet[] equivalents;
+        // Inverse of below plus the equivalent values: every other value covering a.
+        BitSet[] coveredBy;
+        // The least value having a as immediate dominator, -1 for the top value: refinements reach a
+        // only from there, so the idom graph becomes a tree.
+        int[] canonicalParent;
+
+        Set<String>[] idomViews;
+        Set<String>[] belowViews;
+        Set<String>[] equivalentViews;
+        Set<String>[] coveredByViews;
+    }
 
     public KvRelations(Policy<?> policy, EncodedAPI<?> encoder) {
-        this.allRelations = new HashMap<>();
-        this.allIdoms = new HashMap<>();
+        this(policy, encoder, null);
+    }
 
+    /**
+     * @param relationCache relations decided by earlier runs, consulted before the solver and extended
+     *                      with its answers; may be null.
+     */
+    public KvRelations(Policy<?> policy, EncodedAPI<?> encoder, RelationCache relationCache) {
+        this(policy, encoder, relationCache, () -> false);
+    }
+
+    /**
+     * @param exhausted tells when the time or call budget is used up; no more solver queries are made then,
+     *                  the pairs left are taken as not covered, like an UNKNOWN answer, and not cached.
+     */
+    public KvRelations(Policy<?> policy, EncodedAPI<?> encoder, RelationCache relationCache,
+                       BooleanSupplier exhausted) {
         Map<VarKey, Set<String>> kvMaps = policy.getKvMap();
         for (VarKey key : kvMaps.keySet()) {
             kvMaps.get(key).add(
@@ -26,87 +71,277 @@ public class KvRelations {
         }
 
         for (VarKey key : kvMaps.keySet()) {
-            allRelations.put(key, new HashMap<>());
-            allIdoms.put(key, new HashMap<>());
             for (String value : kvMaps.get(key)) {
-                allRelations.get(key).put(value, new HashSet<>());
-                allIdoms.get(key).put(value, new HashSet<>());
+                dictionary.intern(key, value);
             }
-            addRelationFromSet(key, kvMaps.getOrDefault(key, Collections.emptySet()), encoder);
+            addRelationFromSet(key, encoder, relationCache, exhausted);
         }
+        if (undecidedPairs > 0) {
+            Parameter.LOGGER.warning(String.format("%d value relations left undecided (solver or phase limits hit), "
+                    + "taken as not covered", undecidedPairs));
+        }
+    }
 
-        addAllIdoms();
+    public final ValueDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * The ID of the finding's value for the key, or -1 if the value is unknown to the relations.
+     * Findings of the same mining run carry IDs of this dictionary already.
+     */
+    public final int valueId(Finding<?> finding, VarKey key) {
+        return finding.getDictionary() == dictionary
+                ? finding.valueId(key)
+                : dictionary.id(key, finding.value(key));
     }
 
     public final Set<String> idom(VarKey key, String value) {
-        return allIdoms.getOrDefault(key, new HashMap<>()).getOrDefault(value, new HashSet<>());
+        KeyRelations relations = allRelations.get(key);
+        int id = dictionary.id(key, value);
+        return relations == null || id < 0 ? Collections.emptySet() : relations.idomViews[id];
     }
 
     public final Set<String> contains(VarKey key, String value) {
-        return allRelations.getOrDefault(key, new HashMap<>()).getOrDefault(value, new HashSet<>());
+        KeyRelations relations = allRelations.get(key);
+        int id = dictionary.id(key, value);
+        return relations == null || id < 0 ? Collections.emptySet() : relations.belowViews[id];
+    }
+
+    public final Set<String> coveredBy(VarKey key, String value) {
+        KeyRelations relations = allRelations.get(key);
+        int id = dictionary.id(key, value);
+        return relations == null || id < 0 ? Collections.emptySet() : relations.coveredByViews[id];
+    }
+
+    public final Set<String> equivalents(VarKey key, String value) {
+        KeyRelations relations = allRelations.get(key);
+        int id = dictionary.id(key, value);
+        return relations == null || id < 0 ? Collections.emptySet() : relations.equivalentViews[id];
+    }
+
+    public final boolean isKnown(VarKey key, String value) {
+        return dictionary.id(key, value) >= 0;
     }
 
-    private void addRelationFromSet(VarKey key, Set<String> values, EncodedAPI<?> encoder) {
-        if (values == null || values.isEmpty()) {
-            this.allRelations.computeIfAbsent(key, k -> new HashMap<>());
-            return;
+    /**
+     * Whether lhs covers rhs, for two values that are both known to the relations.
+     */
+    public final boolean greaterEquals(VarKey key, String lhs, String rhs) {
+        return lhs.equals(rhs) || greaterEquals(key, dictionary.id(key, lhs), dictionary.id(key, rhs));
+    }
+
+    /**
+     * Whether the value with ID lhs covers the value with ID rhs.
+     */
+    public final boolean greaterEquals(VarKey key, int lhs, int rhs) {
+        if (lhs == rhs) {
+            return lhs >= 0;
         }
+        KeyRelations relations = allRelations.get(key);
+        if (relations == null || lhs < 0 || rhs < 0) {
+            return false;
+        }
+        return relations.below[lhs].get(rhs) || relations.equivalents[lhs].get(rhs);
+    }
+
+    public final BitSet containsIds(VarKey key, int id) {
+        return allRelations.get(key).below[id];
+    }
+
+    public final BitSet idomIds(VarKey key, int id) {
+        return allRelations.get(key).idoms[id];
+    }
 
-        for (String str1 : values) {
-            for (String str2 : values) {
-                if (str1.equals(str2)) {
+    public final BitSet coveredByIds(VarKey key, int id) {
+        return allRelations.get(key).coveredBy[id];
+    }
+
+    public final BitSet equivalentIds(VarKey key, int id) {
+        return allRelations.get(key).equivalents[id];
+    }
+
+    public final int canonicalParent(VarKey key, int id) {
+        return allRelations.get(key).canonicalParent[id];
+    }
+
+    private <T> void addRelationFromSet(VarKey key, EncodedAPI<T> encoder, RelationCache relationCache,
+                                        BooleanSupplier exhausted) {
+        int size = dictionary.size(key);
+
+        // covers[a] holds every b with a >= b. CIDRs are compared as address intervals and
+        // wildcard patterns natively; only the pairs PatternContainment cannot decide are left
+        // for the solver.
+        BitSet[] covers = new BitSet[size];
+        Map<Integer, BitSet> undecided = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            covers[i] = new BitSet(size);
+            String str1 = dictionary.value(key, i);
+            for (int j = 0; j < size; j++) {
+                if (i == j) {
                     continue;
                 }
+                String str2 = dictionary.value(key, j);
+                Boolean decided = key == VarKey.AWS_SOURCE_IP
+                        ? IpRangeSet.greaterEquals(str1, str2)
+                        : PatternContainment.greaterEquals(str1, str2);
+                if (decided == null) {
+                    undecided.computeIfAbsent(i, k -> new BitSet(size)).set(j);
+                } else if (decided) {
+                    covers[i].set(j);
+                }
+            }
+        }
 
-                if (this.allRelations.getOrDefault(key, Collections.emptyMap()).getOrDefault(str1, Collections.emptySet()).contains(str2)
-            || this.allRelations.getOrDefault(key, Collections.emptyMap()).getOrDefault(str2, Collections.emptySet()).contains(str1)) {
+        // The negation of the greater value is kept resident in the solver session, so each
+        // remaining pair costs one incremental query, unless an earlier run already answered it.
+        Map<Integer, T> valueExprs = new HashMap<>();
+        for (Map.Entry<Integer, BitSet> entry : undecided.entrySet()) {
+            int i = entry.getKey();
+            String str1 = dictionary.value(key, i);
+            if (str1.equals("*")) {
+                covers[i].or(entry.getValue());
+                continue;
+            }
+            BitSet candidates = entry.getValue();
+            boolean baseSet = false;
+            for (int j = candidates.nextSetBit(0); j >= 0; j = candidates.nextSetBit(j + 1)) {
+                String str2 = dictionary.value(key, j);
+                if (str2.equals("*")) {
+                    continue;
+                }
+                Boolean cached = relationCache == null ? null : relationCache.get(key, str1, str2);
+                if (cached == null && exhausted.getAsBoolean()) {
+                    undecidedPairs++;
                     continue;
                 }
+                if (cached == null) {
+                    if (!baseSet) {
+                        encoder.setBase(encoder.not(valueExpr(key, i, valueExprs, encoder)));
+                        baseSet = true;
+                    }
+                    SolverStatus status = encoder.checkStatusWithBase(valueExpr(key, j, valueExprs, encoder));
+                    // UNKNOWN (a solver limit was hit) counts as not covered for this run only; persisting it
+                    // would lose the containment for good.
+                    cached = status == SolverStatus.UNSAT;
+                    if (status == SolverStatus.UNKNOWN) {
+                        undecidedPairs++;
+                    } else if (relationCache != null) {
+                        relationCache.put(key, str1, str2, cached);
+                    }
+                }
+                if (cached) {
+                    covers[i].set(j);
+                }
+            }
+        }
+        encoder.clearBase();
 
-                if (encoder.greaterThan(key, str1, str2)) {
-                    addRelation(key, str1, str2);
+        KeyRelations relations = new KeyRelations();
+        relations.below = new BitSet[size];
+        relations.equivalents = new BitSet[size];
+        relations.coveredBy = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            relations.below[i] = new BitSet(size);
+            relations.equivalents[i] = new BitSet(size);
+            relations.coveredBy[i] = new BitSet(size);
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = covers[i].nextSetBit(0); j >= 0; j = covers[i].nextSetBit(j + 1)) {
+                if (covers[j].get(i)) {
+                    relations.equivalents[i].set(j);
+                } else {
+                    relations.below[i].set(j);
                 }
+                relations.coveredBy[j].set(i);
             }
         }
+        addAllIdoms(relations, size);
+
+        relations.idomViews = views(key, relations.idoms);
+        relations.belowViews = views(key, relations.below);
+        relations.equivalentViews = views(key, relations.equivalents);
+        relations.coveredByViews = views(key, relations.coveredBy);
+        allRelations.put(key, relations);
     }
 
-    private void addAllIdoms() {
-        for (VarKey key : allRelations.keySet()) {
-            for (String greater : allRelations.getOrDefault(key, new HashMap<>()).keySet()) {
-                Set<String> smallerSet = allRelations.getOrDefault(key, new HashMap<>()).get(greater);
-                for (String smaller : smallerSet) {
-                    boolean isIdom = true;
-                    for (String intermediate : smallerSet) {
-                        if (intermediate.equals(smaller)) {
-                            continue;
-                        }
-                        if (allRelations.getOrDefault(key, Collections.emptyMap())
-                                .getOrDefault(greater, Collections.emptySet())
-                                .contains(intermediate)
-                                && allRelations.getOrDefault(key, Collections.emptyMap())
-                                .getOrDefault(intermediate, Collections.emptySet())
-                                .contains(smaller)) {
-                            isIdom = false;
-                            break;
-                        }
-                    }
-                    if (isIdom) {
-                        addIdom(key, greater, smaller);
-                    }
+    private <T> T valueExpr(VarKey key, int id, Map<Integer, T> valueExprs, EncodedAPI<T> encoder) {
+        return valueExprs.computeIfAbsent(id, i -> switch (key) {
+            case AWS_SOURCE_IP -> encoder.mkIpMatch("tmp", dictionary.value(key, i));
+            default -> encoder.mkReMatch("tmp", dictionary.value(key, i));
+        });
+    }
+
+    // Transitive reduction: b is an immediate dominator of a iff a > b and no c with a > c > b exists,
+    // i.e. idoms[a] = below[a] minus the union of below[c] over all c in below[a].
+    private static void addAllIdoms(KeyRelations relations, int size) {
+        relations.idoms = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            BitSet reachable = new BitSet(size);
+            BitSet below = relations.below[i];
+            for (int j = below.nextSetBit(0); j >= 0; j = below.nextSetBit(j + 1)) {
+                reachable.or(relations.below[j]);
+            }
+            BitSet idoms = (BitSet) below.clone();
+            idoms.andNot(reachable);
+            relations.idoms[i] = idoms;
+        }
+
+        relations.canonicalParent = new int[size];
+        Arrays.fill(relations.canonicalParent, -1);
+        for (int i = 0; i < size; i++) {
+            BitSet idoms = relations.idoms[i];
+            for (int j = idoms.nextSetBit(0); j >= 0; j = idoms.nextSetBit(j + 1)) {
+                if (relations.canonicalParent[j] < 0) {
+                    relations.canonicalParent[j] = i;
                 }
             }
         }
     }
 
-    private void addRelation(VarKey key, String greater, String smaller) {
-        this.allRelations.computeIfAbsent(key, k -> new HashMap<>())
-                .computeIfAbsent(greater, k -> new HashSet<>())
-                .add(smaller);
+    @SuppressWarnings("unchecked")
+    private Set<String>[] views(VarKey key, BitSet[] rows) {
+        Set<String>[] views = new Set[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            views[i] = new IdSetView(key, rows[i]);
+        }
+        return views;
     }
 
-    private void addIdom(VarKey key, String greater, String smaller) {
-        this.allIdoms.computeIfAbsent(key, k -> new HashMap<>())
-                .computeIfAbsent(greater, k -> new HashSet<>())
-                .add(smaller);
+    /**
+     * A read-only Set of values backed by a bitset row of value IDs.
+     */
+    private class IdSetView extends AbstractSet<String> {
+        private final VarKey key;
+        private final BitSet ids;
+
+        IdSetView(VarKey key, BitSet ids) {
+            this.key = key;
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String value)) {
+                return false;
+            }
+            int id = dictionary.id(key, value);
+            return id >= 0 && ids.get(id);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return ids.stream().mapToObj(id -> dictionary.value(key, id)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return ids.cardinality();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ids.isEmpty();
+        }
     }
 }
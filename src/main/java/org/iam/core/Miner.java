@@ -1,116 +1,409 @@
 package org.iam.core;
 
-import com.microsoft.z3.BoolExpr;
-import io.github.cvc5.Term;
 import org.iam.common.SetCoverSolver;
+import org.iam.common.CountingEncoder;
 import org.iam.common.VarAtomicPredicates;
+import org.iam.common.apis.CheckResult;
 import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverStatus;
 import org.iam.common.basetypes.Finding;
 import org.iam.common.basetypes.Policy;
 import org.iam.common.reduce.StaticVar;
+import org.iam.common.vars.VarKey;
 import org.iam.utils.Parameter;
 import org.iam.utils.TimeMeasure;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class Miner {
+    private final RelationCache relationCache;
+    // Findings of the last mining run that were reported without a definitive answer of the solver.
+    private final Set<Finding<?>> approximateFindings = ConcurrentHashMap.newKeySet();
+    // Checks of the last mining run answered by a cached model or an inherited unsat core instead of the solver.
+    private final LongAdder modelAnswers = new LongAdder();
+    private final LongAdder coreAnswers = new LongAdder();
+    // Findings of the last mining run found not to intersect the policy at all, with their subtrees dropped.
+    private final LongAdder emptySubtrees = new LongAdder();
+    // Checks made through the encoder in the last mining run, by the relations, the search and the
+    // antichains alike; counted against Parameter.callBudget.
+    private final LongAdder solverCalls = new LongAdder();
+    // Findings still unexplored when the budget of the last mining run ran out.
+    private final Set<Finding<?>> frontierFindings = ConcurrentHashMap.newKeySet();
+
+    // The outcome of checking a finding's reduced formula; for UNSAT, core holds the keys whose parts
+    // are unsatisfiable together with the policy (all keys if the solver gave no core), and inherited
+    // tells whether it was taken over from an ancestor instead of asking the solver.
+    private record Verdict(SolverStatus status, Set<VarKey> core, boolean inherited) {
+    }
+
+    public Miner() {
+        this(null);
+    }
+
+    /**
+     * @param relationCache persistent value relations shared between runs; may be null.
+     */
+    public Miner(RelationCache relationCache) {
+        this.relationCache = relationCache;
+    }
+
+    /**
+     * Mines the policy with an encoder of the active solver; the policy must have been encoded by the
+     * same encoder, so both share one expression type.
+     */
     @SuppressWarnings("unchecked")
     public Set<Finding<?>> mineIntent(Policy<?> policy, TimeMeasure timeMeasure, EncodedAPI<?> encoder) {
-        if (Parameter.getActiveSolver() == Parameter.SolverType.Z3) {
-            Set<Finding<BoolExpr>> findings = mineInternal(
-                    (Policy<BoolExpr>) policy,
-                    (EncodedAPI<BoolExpr>) encoder,
-                    timeMeasure
-            );
-            return (Set<Finding<?>>)(Set<?>) findings;
-        } else {
-            Set<Finding<Term>> findings = mineInternal(
-                    (Policy<Term>) policy,
-                    (EncodedAPI<Term>) encoder,
-                    timeMeasure
-            );
-            return (Set<Finding<?>>)(Set<?>) findings;
-        }
+        Set<Finding<Object>> findings = mineInternal(
+                (Policy<Object>) policy,
+                (EncodedAPI<Object>) encoder,
+                timeMeasure
+        );
+        return (Set<Finding<?>>) (Set<?>) findings;
+    }
+
+    /**
+     * The findings of the last mining run that are only approximate: the solver answered UNKNOWN for
+     * them (query limits) or they were still unexplored when the mining budget ran out. Each of them
+     * may cover more than the policy actually allows.
+     */
+    public Set<Finding<?>> getApproximateFindings() {
+        return approximateFindings;
+    }
+
+    public long getModelAnswers() {
+        return modelAnswers.sum();
+    }
+
+    public long getCoreAnswers() {
+        return coreAnswers.sum();
+    }
+
+    public long getEmptySubtrees() {
+        return emptySubtrees.sum();
+    }
+
+    public long getSolverCalls() {
+        return solverCalls.sum();
+    }
+
+    /**
+     * The findings of the last mining run that were still unexplored when its time or solver-call budget
+     * ran out. They are also among the approximate findings: each stands for everything below it.
+     */
+    public Set<Finding<?>> getFrontier() {
+        return frontierFindings;
+    }
+
+    private boolean budgetExhausted(long deadline) {
+        return System.nanoTime() - deadline > 0
+                || Parameter.callBudget > 0 && solverCalls.sum() >= Parameter.callBudget;
+    }
+
+    private static long phaseDeadline() {
+        return Parameter.phaseTimeout > 0
+                ? System.nanoTime() + Parameter.phaseTimeout * 1_000_000L
+                : Long.MAX_VALUE;
     }
 
     private <T> Set<Finding<T>> mineInternal(Policy<T> policy, EncodedAPI<T> encoder, TimeMeasure timeMeasure) {
-        Finding<T> rootFinding = new Finding<>(policy);
-        KvRelations relations = new KvRelations(policy, encoder);
+        approximateFindings.clear();
+        modelAnswers.reset();
+        coreAnswers.reset();
+        emptySubtrees.reset();
+        solverCalls.reset();
+        frontierFindings.clear();
+        // The phase spans building the relations and the search, whatever the number of threads, and
+        // every check made in it, through the encoder or any of its forks, counts against the budget.
+        long deadline = phaseDeadline();
+        EncodedAPI<T> counted = new CountingEncoder<>(encoder, solverCalls);
+        return Parameter.threads > 1
+                ? mineParallel(policy, counted, timeMeasure, deadline)
+                : mineSequential(policy, counted, timeMeasure, deadline);
+    }
+
+    private <T> Set<Finding<T>> mineSequential(Policy<T> policy, EncodedAPI<T> encoder, TimeMeasure timeMeasure,
+                                               long deadline) {
+        long relationsStart = System.nanoTime();
+        KvRelations relations = new KvRelations(policy, encoder, relationCache, () -> budgetExhausted(deadline));
+        timeMeasure.addPhase("relations", System.nanoTime() - relationsStart);
+        Finding<T> rootFinding = new Finding<>(policy, relations.getDictionary());
+        SubsumptionChecker subsumption = new SubsumptionChecker(relations);
 
-        Queue<Finding<T>> workList = new LinkedList<>();
-        Set<Finding<T>> results = new HashSet<>();
+        WorkList<Finding<T>> workList = new WorkList<>(Parameter.workListOrder, bestFirst(relations));
+        FindingAntichain<T> results = new FindingAntichain<>(relations, subsumption);
+        FindingAntichain<T> emptyRegions = new FindingAntichain<>(relations, subsumption);
+        ModelCache modelCache = new ModelCache();
+        Map<Finding<T>, Set<VarKey>> knownUnsat = new HashMap<>();
 
-        workList.add(rootFinding);
+        long miningStart = System.nanoTime();
+        // The policy is asserted once and stays resident for every round of the work list.
+        encoder.setBase(policy.encode(encoder));
+        workList.offer(rootFinding);
         while (!workList.isEmpty()) {
 
             long startTime = System.nanoTime();
+            if (budgetExhausted(deadline)) {
+                // Out of budget: the unexplored findings are reported as they are, over-approximating the rest.
+                while (!workList.isEmpty()) {
+                    reportUnexplored(workList.poll(), results, encoder);
+                }
+                break;
+            }
 
             Finding<T> currentFinding = workList.poll();
-            if (encoder.checkIntersection(List.of(policy.encode(encoder), currentFinding.reduce(relations, encoder)))) {
-                Boolean allNotContain = true;
-                for (Finding<T> result : results) {
-                    if (result.equals(currentFinding)
-                            || encoder.greaterEquals(result.encode(encoder), currentFinding.encode(encoder))) {
-                        allNotContain = false;
-                        break;
-                    }
+            Verdict verdict = checkReduced(currentFinding, relations, encoder, modelCache, knownUnsat);
+            if (verdict.status() != SolverStatus.UNSAT) {
+                // UNKNOWN is treated like SAT: the finding is kept rather than refined away.
+                if (results.add(currentFinding, encoder) && verdict.status() == SolverStatus.UNKNOWN) {
+                    approximateFindings.add(currentFinding);
                 }
-                if (allNotContain) {
-                    results.add(currentFinding);
-                }
-            } else {
+            } else if (!isEmptyRegion(currentFinding, verdict, relations, encoder, emptyRegions)) {
                 Set<Finding<T>> refinements = currentFinding.refine(relations);
                 for (Finding<T> refinement : refinements) {
-                    boolean notContainedInResults = true;
-                    for (Finding<T> result : results) {
-                        if (result.equals(refinement)
-                                || encoder.greaterEquals(result.encode(encoder), refinement.encode(encoder))) {
-                            notContainedInResults = false;
-                            break;
-                        }
+                    if (!workList.hasSeen(refinement) && !results.isCovered(refinement, encoder)
+                            && !emptyRegions.isCovered(refinement, encoder)) {
+                        workList.offer(refinement);
+                        inheritCore(currentFinding, refinement, verdict.core(), knownUnsat);
                     }
+                }
+            }
 
-                    boolean notContainedInWorkList = true;
-                    for (Finding<T> workItem : workList) {
-                        if (workItem.equals(refinement)) {
-                            notContainedInWorkList = false;
-                            break;
-                        }
-                    }
+            long endTime = System.nanoTime();
+            timeMeasure.addRound(endTime - startTime);
+        }
+        encoder.clearBase();
+        timeMeasure.addPhase("mining", System.nanoTime() - miningStart);
+        return collectResults(results);
+    }
+
+    /**
+     * Decides whether the reduced formula of the finding intersects the policy resident as base. The
+     * solver is skipped if an ancestor's unsat core still applies to the finding, or if the model of an
+     * earlier SAT answer already satisfies it.
+     */
+    private <T> Verdict checkReduced(Finding<T> finding, KvRelations relations, EncodedAPI<T> encoder,
+                                     ModelCache modelCache, Map<Finding<T>, Set<VarKey>> knownUnsat) {
+        Set<VarKey> inherited = knownUnsat.remove(finding);
+        if (inherited != null) {
+            coreAnswers.increment();
+            return new Verdict(SolverStatus.UNSAT, inherited, true);
+        }
+        if (modelCache.answers(finding, relations)) {
+            modelAnswers.increment();
+            return new Verdict(SolverStatus.SAT, null, false);
+        }
+
+        List<VarKey> keys = finding.keys();
+        CheckResult result = encoder.checkPartsWithBase(finding.reduceParts(relations, encoder));
+        if (result.status() == SolverStatus.SAT) {
+            modelCache.add(result.model());
+        }
+        if (result.status() != SolverStatus.UNSAT) {
+            return new Verdict(result.status(), null, false);
+        }
+        Set<VarKey> core = EnumSet.noneOf(VarKey.class);
+        for (int i = 0; i < keys.size(); i++) {
+            if (result.core() == null || result.core().get(i)) {
+                core.add(keys.get(i));
+            }
+        }
+        return new Verdict(SolverStatus.UNSAT, core, false);
+    }
 
-                    if (notContainedInResults && notContainedInWorkList) {
-                        workList.add(refinement);
+    /**
+     * Whether the finding, whose reduced formula is UNSAT, does not intersect the policy at all. Then no
+     * finding below it does either, so it is remembered and every later refinement it covers is dropped
+     * as soon as it is generated.
+     * <p>
+     * If no key of the core has immediate dominators, the core parts are the finding's values themselves
+     * and the finding is empty without another call. Otherwise the finding is checked against the policy
+     * resident as base, unless the verdict was inherited: pruning is only a saving, and a call for it would
+     * cancel the one the inherited core saved.
+     */
+    private <T> boolean isEmptyRegion(Finding<T> finding, Verdict verdict, KvRelations relations,
+                                      EncodedAPI<T> encoder, FindingAntichain<T> emptyRegions) {
+        boolean unreducedCore = true;
+        for (VarKey key : verdict.core()) {
+            if (!relations.idomIds(key, finding.valueId(key)).isEmpty()) {
+                unreducedCore = false;
+                break;
+            }
+        }
+        if (!unreducedCore) {
+            if (verdict.inherited()) {
+                return false;
+            }
+            if (encoder.checkStatusWithBase(finding.encode(encoder)) != SolverStatus.UNSAT) {
+                return false;
+            }
+        }
+        emptyRegions.add(finding, encoder);
+        emptySubtrees.increment();
+        return true;
+    }
+
+    // A refinement keeping the values of all core keys has the very same unsatisfiable parts.
+    private static <T> void inheritCore(Finding<T> parent, Finding<T> refinement, Set<VarKey> core,
+                                        Map<Finding<T>, Set<VarKey>> knownUnsat) {
+        for (VarKey key : core) {
+            if (refinement.valueId(key) != parent.valueId(key)) {
+                return;
+            }
+        }
+        knownUnsat.putIfAbsent(refinement, core);
+    }
+
+    private <T> void reportUnexplored(Finding<T> finding, FindingAntichain<T> results, EncodedAPI<T> encoder) {
+        if (results.add(finding, encoder)) {
+            approximateFindings.add(finding);
+            frontierFindings.add(finding);
+        }
+    }
+
+    private <T> Set<Finding<T>> collectResults(FindingAntichain<T> results) {
+        Set<Finding<T>> findings = results.toSet();
+        approximateFindings.retainAll(findings);
+        frontierFindings.retainAll(findings);
+        return findings;
+    }
+
+    private static <T> Comparator<Finding<T>> bestFirst(KvRelations relations) {
+        return Parameter.workListOrder == Parameter.WorkListOrder.COST
+                ? Miner.<T>byEstimatedCost(relations).thenComparing(byGenerality(relations))
+                : byGenerality(relations);
+    }
+
+    // More general findings first: the more values lie below a finding's values, the earlier it is visited.
+    private static <T> Comparator<Finding<T>> byGenerality(KvRelations relations) {
+        return Comparator.comparingInt((Finding<T> finding) -> finding.keys().stream()
+                .mapToInt(key -> relations.containsIds(key, relations.valueId(finding, key)).cardinality())
+                .sum()).reversed();
+    }
+
+    // Cheaper checks first: the reduced formula of a finding matches every value and excludes each of its
+    // immediate dominators, so the fewer of those, the smaller the query.
+    private static <T> Comparator<Finding<T>> byEstimatedCost(KvRelations relations) {
+        return Comparator.comparingInt((Finding<T> finding) -> finding.keys().stream()
+                .mapToInt(key -> 1 + relations.idomIds(key, relations.valueId(finding, key)).cardinality())
+                .sum());
+    }
+
+    /**
+     * Level-synchronous variant of mineInternal. Every finding of the current frontier is checked on a
+     * worker of a fork-join pool; each worker owns a forked encoder (its own solver context) with its own
+     * encoding of the policy resident as base. Satisfiable findings are merged into the shared antichain,
+     * which evicts the entries a new finding covers, so the result does not depend on thread timing.
+     */
+    private <T> Set<Finding<T>> mineParallel(Policy<T> policy, EncodedAPI<T> encoder, TimeMeasure timeMeasure,
+                                             long deadline) {
+        long relationsStart = System.nanoTime();
+        KvRelations relations = new KvRelations(policy, encoder, relationCache, () -> budgetExhausted(deadline));
+        timeMeasure.addPhase("relations", System.nanoTime() - relationsStart);
+        Finding<T> rootFinding = new Finding<>(policy, relations.getDictionary());
+        SubsumptionChecker subsumption = new SubsumptionChecker(relations);
+
+        FindingAntichain<T> results = new FindingAntichain<>(relations, subsumption);
+        FindingAntichain<T> emptyRegions = new FindingAntichain<>(relations, subsumption);
+        ModelCache modelCache = new ModelCache();
+        Map<Finding<T>, Set<VarKey>> knownUnsat = new ConcurrentHashMap<>();
+        Queue<EncodedAPI<T>> workers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<EncodedAPI<T>> workerEncoder = ThreadLocal.withInitial(() -> {
+            EncodedAPI<T> worker = encoder.fork();
+            worker.setBase(policy.encode(worker));
+            workers.add(worker);
+            return worker;
+        });
+
+        long miningStart = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(Parameter.threads);
+        try {
+            List<Finding<T>> frontier = List.of(rootFinding);
+            while (!frontier.isEmpty()) {
+                long startTime = System.nanoTime();
+                // Findings a worker found the budget used up for come back unexpanded and end up here.
+                if (budgetExhausted(deadline)) {
+                    // Out of budget: the unexplored frontier is reported as it is, over-approximating the rest.
+                    for (Finding<T> pendingFinding : frontier) {
+                        reportUnexplored(pendingFinding, results, encoder);
                     }
+                    break;
                 }
+
+                List<Finding<T>> currentFrontier = frontier;
+                frontier = pool.submit(() -> currentFrontier.parallelStream()
+                        .flatMap(finding -> expandParallel(finding, relations, workerEncoder.get(), results,
+                                emptyRegions, modelCache, knownUnsat, deadline).stream())
+                        .toList()
+                ).get();
+
+                long endTime = System.nanoTime();
+                timeMeasure.addRound(endTime - startTime);
             }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Error during parallel mining: " + e.getMessage(), e);
+        } finally {
+            pool.shutdown();
+            workers.forEach(EncodedAPI::close);
+        }
+        timeMeasure.addPhase("mining", System.nanoTime() - miningStart);
+        return collectResults(results);
+    }
 
-            long endTime = System.nanoTime();
-            timeMeasure.addRound(endTime - startTime);
+    private <T> List<Finding<T>> expandParallel(Finding<T> finding, KvRelations relations, EncodedAPI<T> worker,
+                                                FindingAntichain<T> results, FindingAntichain<T> emptyRegions,
+                                                ModelCache modelCache, Map<Finding<T>, Set<VarKey>> knownUnsat,
+                                                long deadline) {
+        if (budgetExhausted(deadline)) {
+            // Out of budget within the level: the finding goes back to the frontier unexpanded.
+            return List.of(finding);
+        }
+        Verdict verdict = checkReduced(finding, relations, worker, modelCache, knownUnsat);
+        if (verdict.status() != SolverStatus.UNSAT) {
+            if (results.add(finding, worker) && verdict.status() == SolverStatus.UNKNOWN) {
+                approximateFindings.add(finding);
+            }
+            return List.of();
+        }
+        if (isEmptyRegion(finding, verdict, relations, worker, emptyRegions)) {
+            return List.of();
         }
-        return results;
+
+        // Refinements are generated in canonical order, so no two workers ever produce the same finding.
+        List<Finding<T>> refinements = new ArrayList<>();
+        for (Finding<T> refinement : finding.refine(relations)) {
+            if (!results.isCovered(refinement, worker) && !emptyRegions.isCovered(refinement, worker)) {
+                refinements.add(refinement);
+                inheritCore(finding, refinement, verdict.core(), knownUnsat);
+            }
+        }
+        return refinements;
     }
 
-    @SuppressWarnings("unchecked")
     public Set<Finding<?>> reduceIntent(Policy<?> policy, Set<Finding<?>> findings, EncodedAPI<?> encoder) {
-        if (Parameter.getActiveSolver() == Parameter.SolverType.Z3) {
-            Set<Finding<BoolExpr>> ansFindings = reduceInternal(
-                    (Policy<BoolExpr>) policy,
-                    (Set<Finding<BoolExpr>>) (Set<?>) findings,
-                    (EncodedAPI<BoolExpr>) encoder
-            );
-            return (Set<Finding<?>>)(Set<?>) ansFindings;
-        } else {
-            Set<Finding<Term>> ansFindings = reduceInternal(
-                    (Policy<Term>) policy,
-                    (Set<Finding<Term>>) (Set<?>) findings,
-                    (EncodedAPI<Term>) encoder
-            );
-            return (Set<Finding<?>>)(Set<?>) ansFindings;
-        }
-    }
-
-    private <T> Set<Finding<T>> reduceInternal(Policy<T> policy, Set<Finding<T>> findings, EncodedAPI<T> encoder) {
+        return reduceIntent(policy, findings, encoder, new TimeMeasure());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<Finding<?>> reduceIntent(Policy<?> policy, Set<Finding<?>> findings, EncodedAPI<?> encoder,
+                                        TimeMeasure timeMeasure) {
+        Set<Finding<Object>> ansFindings = reduceInternal(
+                (Policy<Object>) policy,
+                (Set<Finding<Object>>) (Set<?>) findings,
+                (EncodedAPI<Object>) encoder,
+                timeMeasure
+        );
+        return (Set<Finding<?>>) (Set<?>) ansFindings;
+    }
+
+    private <T> Set<Finding<T>> reduceInternal(Policy<T> policy, Set<Finding<T>> findings, EncodedAPI<T> encoder,
+                                               TimeMeasure timeMeasure) {
         try {
             if (findings == null || findings.isEmpty()) {
                 return Collections.emptySet();
@@ -131,13 +424,26 @@ public class Miner {
 
             // 3. Compute Atomic Predicates
             // Now VarAtomicPredicates is generic and takes EncodedAPI
-            VarAtomicPredicates<T> varAtomicPredicates = new VarAtomicPredicates<>(smtVars, logicTrue, encoder);
+            // The reduction is a phase of its own under Parameter.phaseTimeout.
+            long deadline = phaseDeadline();
+            long atomicPredicatesStart = System.nanoTime();
+            VarAtomicPredicates<T> varAtomicPredicates;
+            try {
+                varAtomicPredicates = new VarAtomicPredicates<>(smtVars, logicTrue, encoder, Parameter.threads,
+                        deadline);
+            } catch (CancellationException e) {
+                // Out of time: the findings are still a cover of the policy, just not a minimal one.
+                Parameter.LOGGER.warning("Reduction phase timed out while computing atomic predicates, "
+                        + "keeping the findings unreduced.");
+                return findings;
+            }
+            timeMeasure.addPhase("atomicPredicates", System.nanoTime() - atomicPredicatesStart);
 
             // 4. Partition atomic predicates
-            Map<Object, Set<Integer>> findingsVarToAPs = new HashMap<>();
-            Set<Integer> policyAPs = null;
+            Map<Object, BitSet> findingsVarToAPs = new HashMap<>();
+            BitSet policyAPs = null;
 
-            for (Map.Entry<StaticVar<T>, Set<Integer>> entry : varAtomicPredicates.getAtomicPredicates().entrySet()) {
+            for (Map.Entry<StaticVar<T>, BitSet> entry : varAtomicPredicates.getAtomicPredicates().entrySet()) {
                 StaticVar<T> var = (StaticVar<T>) entry.getKey();
                 if (var.getVarType() == StaticVar.VarType.FINDING) {
                     findingsVarToAPs.put(var, entry.getValue());
@@ -147,9 +453,24 @@ public class Miner {
             }
 
             // 5. Solve Set Cover
-            // Solve needs Map<Object, Set<Integer>>, our key is StaticVar which is Object
-            if (policyAPs == null) policyAPs = Collections.emptySet();
-            Map<Object, Set<Integer>> solution = SetCoverSolver.solve(findingsVarToAPs, policyAPs);
+            // Solve needs Map<Object, BitSet>, our key is StaticVar which is Object
+            if (policyAPs == null) policyAPs = new BitSet();
+            long setCoverStart = System.nanoTime();
+            // The exact cover gets what is left of the phase at most, the heuristic one is always kept.
+            long remaining = deadline == Long.MAX_VALUE ? 0 : (deadline - System.nanoTime()) / 1_000_000L;
+            int coverTimeout = Parameter.coverTimeout;
+            if (deadline != Long.MAX_VALUE) {
+                coverTimeout = (int) Math.max(1, coverTimeout > 0 ? Math.min(coverTimeout, remaining) : remaining);
+            }
+            boolean exact = !Parameter.isGreedyCover && (deadline == Long.MAX_VALUE || remaining > 0);
+            Map<Object, BitSet> solution = SetCoverSolver.solve(findingsVarToAPs, policyAPs, exact, coverTimeout);
+            timeMeasure.addPhase("setCover", System.nanoTime() - setCoverStart);
+            BitSet uncovered = (BitSet) policyAPs.clone();
+            solution.values().forEach(uncovered::andNot);
+            if (!uncovered.isEmpty()) {
+                Parameter.LOGGER.warning("The findings do not cover " + uncovered.cardinality()
+                        + " atomic predicates of the policy, the reduction is incomplete.");
+            }
 
             return solution.keySet().stream()
                     .map(k -> (Finding<T>) ((StaticVar<T>) k).getValue())
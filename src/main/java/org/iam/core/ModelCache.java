@@ -0,0 +1,66 @@
+package org.iam.core;
+
+import org.iam.common.IpRangeSet;
+import org.iam.common.PatternContainment;
+import org.iam.common.apis.CheckResult;
+import org.iam.common.basetypes.Finding;
+import org.iam.common.vars.VarKey;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The most recent models of SAT answers of the mining loop. Every model satisfies the policy, so a
+ * model that also satisfies the reduced formula of a finding (each value matched, none of its
+ * immediate dominators) proves that finding SAT without asking the solver. Safe for concurrent use.
+ */
+class ModelCache {
+    private static final int MAX_MODELS = 64;
+
+    private final Deque<Map<String, String>> models = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    void add(Map<String, String> model) {
+        if (model == null || model.isEmpty()) {
+            return;
+        }
+        models.addFirst(model);
+        if (size.incrementAndGet() > MAX_MODELS && models.pollLast() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    boolean answers(Finding<?> finding, KvRelations relations) {
+        for (Map<String, String> model : models) {
+            if (satisfiesReduced(model, finding, relations)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean satisfiesReduced(Map<String, String> model, Finding<?> finding, KvRelations relations) {
+        for (VarKey key : finding.keys()) {
+            String variable = key == VarKey.AWS_SOURCE_IP ? CheckResult.ipVariable(key.toString()) : key.toString();
+            String assigned = model.get(variable);
+            if (assigned == null || !matches(key, finding.value(key), assigned)) {
+                return false;
+            }
+            for (String idom : relations.idom(key, finding.value(key))) {
+                if (matches(key, idom, assigned)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(VarKey key, String value, String assigned) {
+        if (key == VarKey.AWS_SOURCE_IP) {
+            return IpRangeSet.ofCidr(value).contains(IpRangeSet.ipToLong(assigned));
+        }
+        return value.equals("*") || PatternContainment.matches(value, assigned);
+    }
+}
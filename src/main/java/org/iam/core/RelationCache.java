@@ -0,0 +1,229 @@
+package org.iam.core;
+
+import org.iam.common.vars.VarKey;
+import org.iam.utils.Parameter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An on-disk cache of the value relations KvRelations had to ask the solver for, shared between runs
+ * and processes. Relations PatternContainment or IpRangeSet decide natively are not stored: deciding them
+ * again is cheaper than looking them up. The file is a header (magic, version) followed by append-only
+ * records
+ * <pre>
+ *   u8     length of the VarKey name, its ASCII bytes
+ *   byte   1 if lhs >= rhs, else 0
+ *   u16    length of lhs, UTF-8 bytes of lhs
+ *   u16    length of rhs, UTF-8 bytes of rhs
+ * </pre>
+ * Keys are stored by name, so reordering VarKey keeps old caches valid; records of a key that no longer
+ * exists are skipped. A file of another version is ignored and left alone.
+ * <p>
+ * The whole file is read into memory once, under a shared file lock, when opened; new results are
+ * appended under an exclusive lock on flush. A truncated trailing record (e.g. of a killed process) is
+ * ignored when reading and cut off by the next flush, before it appends.
+ */
+public class RelationCache implements Closeable {
+    private static final int MAGIC = 0x4B565243;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_VALUE_LENGTH = 0xFFFF;
+    private static final Map<String, VarKey> KEYS = Arrays.stream(VarKey.values())
+            .collect(Collectors.toMap(VarKey::name, Function.identity()));
+
+    private record Relation(VarKey key, String lhs, String rhs) {
+    }
+
+    private final Path path;
+    private final Map<Relation, Boolean> relations = new ConcurrentHashMap<>();
+    private final List<Map.Entry<Relation, Boolean>> pending = new ArrayList<>();
+    private boolean writable = true;
+
+    private RelationCache(Path path) {
+        this.path = path;
+    }
+
+    public static RelationCache open(Path path) throws IOException {
+        RelationCache cache = new RelationCache(path);
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * @return whether lhs >= rhs, or null if the relation is not cached.
+     */
+    public Boolean get(VarKey key, String lhs, String rhs) {
+        return relations.get(new Relation(key, lhs, rhs));
+    }
+
+    public synchronized void put(VarKey key, String lhs, String rhs, boolean greaterEquals) {
+        Relation relation = new Relation(key, lhs, rhs);
+        if (relations.putIfAbsent(relation, greaterEquals) == null) {
+            pending.add(Map.entry(relation, greaterEquals));
+        }
+    }
+
+    public int size() {
+        return relations.size();
+    }
+
+    public synchronized void flush() throws IOException {
+        if (pending.isEmpty() || !writable) {
+            return;
+        }
+        ByteBuffer buffer = encode(pending);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+             FileLock ignored = channel.lock()) {
+            long size = channel.size();
+            long position;
+            if (size == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                channel.write(header, 0);
+                position = HEADER_SIZE;
+            } else {
+                // Rescan under the lock: other processes may have appended since load, and a record torn by
+                // a killed writer has to be cut off, or every record appended after it is misparsed.
+                ByteBuffer contents = ByteBuffer.allocate(Math.toIntExact(size));
+                while (contents.hasRemaining()) {
+                    if (channel.read(contents, contents.position()) < 0) {
+                        break;
+                    }
+                }
+                contents.flip();
+                if (!hasHeader(contents)) {
+                    Parameter.LOGGER.warning("Not writing to relation cache with unknown format: " + path);
+                    writable = false;
+                    return;
+                }
+                position = readRecords(contents, relations::putIfAbsent);
+                if (position < size) {
+                    Parameter.LOGGER.warning(String.format("Dropping %d bytes of a truncated record from relation cache %s",
+                            size - position, path));
+                    channel.truncate(position);
+                }
+            }
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        // A cache the process may not write to is still read, just never flushed.
+        writable = Files.isWritable(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!hasHeader(buffer)) {
+                Parameter.LOGGER.warning("Ignoring relation cache with unknown format: " + path);
+                writable = false;
+                return;
+            }
+            readRecords(buffer, relations::put);
+        }
+    }
+
+    private static boolean hasHeader(ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_SIZE && buffer.getInt() == MAGIC && buffer.getInt() == VERSION;
+    }
+
+    /**
+     * Reads the records from the buffer's position on, up to the first incomplete one.
+     *
+     * @return the offset just after the last complete record.
+     */
+    private static long readRecords(ByteBuffer buffer, BiConsumer<Relation, Boolean> consumer) {
+        int end = buffer.position();
+        while (buffer.hasRemaining()) {
+            try {
+                byte[] name = new byte[Byte.toUnsignedInt(buffer.get())];
+                buffer.get(name);
+                boolean greaterEquals = buffer.get() != 0;
+                String lhs = readString(buffer);
+                String rhs = readString(buffer);
+                end = buffer.position();
+                VarKey key = KEYS.get(new String(name, StandardCharsets.US_ASCII));
+                if (key != null) {
+                    consumer.accept(new Relation(key, lhs, rhs), greaterEquals);
+                }
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+        }
+        return end;
+    }
+
+    private static ByteBuffer encode(List<Map.Entry<Relation, Boolean>> entries) {
+        List<byte[]> values = new ArrayList<>();
+        List<Map.Entry<Relation, Boolean>> records = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<Relation, Boolean> entry : entries) {
+            byte[] lhs = entry.getKey().lhs().getBytes(StandardCharsets.UTF_8);
+            byte[] rhs = entry.getKey().rhs().getBytes(StandardCharsets.UTF_8);
+            if (lhs.length > MAX_VALUE_LENGTH || rhs.length > MAX_VALUE_LENGTH) {
+                continue;
+            }
+            records.add(entry);
+            values.add(lhs);
+            values.add(rhs);
+            size += 6 + entry.getKey().key().name().length() + lhs.length + rhs.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < records.size(); i++) {
+            Map.Entry<Relation, Boolean> entry = records.get(i);
+            byte[] name = entry.getKey().key().name().getBytes(StandardCharsets.US_ASCII);
+            buffer.put((byte) name.length);
+            buffer.put(name);
+            buffer.put((byte) (entry.getValue() ? 1 : 0));
+            writeString(buffer, values.get(2 * i));
+            writeString(buffer, values.get(2 * i + 1));
+        }
+        return buffer.flip();
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package org.iam.core;
+
+import org.iam.common.IpRangeSet;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.basetypes.Finding;
+import org.iam.common.vars.VarKey;
+
+/**
+ * Decides whether one finding covers another. A finding is a product of per-key value sets, so
+ * (lhs >= rhs) holds exactly when it holds key by key, which KvRelations already knows. The solver is
+ * only asked when the per-key test is inconclusive (a value unknown to the relations, or an empty one).
+ */
+public class SubsumptionChecker {
+    private static final VarKey[] KEYS = VarKey.values();
+
+    private final KvRelations relations;
+
+    public SubsumptionChecker(KvRelations relations) {
+        this.relations = relations;
+    }
+
+    /**
+     * @return whether lhs >= rhs, or null if it cannot be decided from the relations.
+     */
+    public Boolean greaterEquals(Finding<?> lhs, Finding<?> rhs) {
+        boolean covers = true;
+        for (VarKey key : KEYS) {
+            if (lhs.hasKey(key) != rhs.hasKey(key)) {
+                return null;
+            }
+            if (!rhs.hasKey(key)) {
+                continue;
+            }
+            int lhsId = relations.valueId(lhs, key);
+            int rhsId = relations.valueId(rhs, key);
+            if (lhsId < 0 || rhsId < 0) {
+                if (lhs.value(key).equals(rhs.value(key))) {
+                    continue;
+                }
+                return null;
+            }
+            if (lhsId == rhsId) {
+                continue;
+            }
+            if (key == VarKey.AWS_SOURCE_IP && IpRangeSet.ofCidr(rhs.value(key)).isEmpty()) {
+                // An empty component makes rhs empty as a whole, which the per-key order cannot see.
+                return null;
+            }
+            if (!relations.greaterEquals(key, lhsId, rhsId)) {
+                covers = false;
+            }
+        }
+        return covers;
+    }
+
+    public <T> boolean greaterEquals(Finding<T> lhs, Finding<T> rhs, EncodedAPI<T> encoder) {
+        Boolean decided = greaterEquals(lhs, rhs);
+        if (decided != null) {
+            return decided;
+        }
+        return encoder.greaterEquals(lhs.encode(encoder), rhs.encode(encoder));
+    }
+}
@@ -0,0 +1,43 @@
+package org.iam.core;
+
+import org.iam.common.vars.VarKey;
+
+import java.util.*;
+
+/**
+ * Interns the values of every key to dense int IDs (0, 1, 2, ... per key), so relations between values
+ * can be held as bitset rows indexed by ID. Values are only interned while KvRelations is built;
+ * afterwards the dictionary is read-only and may be shared between threads.
+ */
+public class ValueDictionary {
+    private final Map<VarKey, Map<String, Integer>> ids = new EnumMap<>(VarKey.class);
+    private final Map<VarKey, List<String>> values = new EnumMap<>(VarKey.class);
+
+    public int intern(VarKey key, String value) {
+        Map<String, Integer> keyIds = ids.computeIfAbsent(key, k -> new HashMap<>());
+        Integer id = keyIds.get(value);
+        if (id == null) {
+            List<String> keyValues = values.computeIfAbsent(key, k -> new ArrayList<>());
+            id = keyValues.size();
+            keyValues.add(value);
+            keyIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the ID of the value, or -1 if it was never interned.
+     */
+    public int id(VarKey key, String value) {
+        Integer id = ids.getOrDefault(key, Collections.emptyMap()).get(value);
+        return id == null ? -1 : id;
+    }
+
+    public String value(VarKey key, int id) {
+        return values.get(key).get(id);
+    }
+
+    public int size(VarKey key) {
+        return values.getOrDefault(key, Collections.emptyList()).size();
+    }
+}
@@ -0,0 +1,80 @@
+package org.iam.core;
+
+import org.iam.utils.Parameter;
+
+import java.util.*;
+
+/**
+ * The miner's work list: a queue paired with a hash index of every element ever enqueued, so that
+ * duplicate refinements are rejected in O(1) instead of by scanning the queue.
+ * Elements are visited in FIFO (breadth-first), LIFO (depth-first) or comparator (PRIORITY, COST)
+ * order; ties in comparator order are broken by insertion order to keep runs deterministic.
+ */
+public class WorkList<E> {
+    private record Entry<E>(E element, long sequence) {
+    }
+
+    private final Parameter.WorkListOrder order;
+    private final Deque<E> deque;
+    private final PriorityQueue<Entry<E>> heap;
+    private final Set<E> seen = new HashSet<>();
+    private long sequence = 0;
+
+    public WorkList(Parameter.WorkListOrder order) {
+        this(order, null);
+    }
+
+    public WorkList(Parameter.WorkListOrder order, Comparator<? super E> comparator) {
+        this.order = order;
+        if (isBestFirst(order)) {
+            Objects.requireNonNull(comparator, "A " + order + " work list needs a comparator.");
+            this.deque = null;
+            this.heap = new PriorityQueue<>(Comparator.<Entry<E>, E>comparing(Entry::element, comparator)
+                    .thenComparingLong(Entry::sequence));
+        } else {
+            this.deque = new ArrayDeque<>();
+            this.heap = null;
+        }
+    }
+
+    /**
+     * Enqueues the element unless it has been enqueued before.
+     *
+     * @return whether the element was enqueued.
+     */
+    public boolean offer(E element) {
+        if (!seen.add(element)) {
+            return false;
+        }
+        switch (order) {
+            case FIFO -> deque.addLast(element);
+            case LIFO -> deque.addFirst(element);
+            case PRIORITY, COST -> heap.add(new Entry<>(element, sequence++));
+        }
+        return true;
+    }
+
+    private static boolean isBestFirst(Parameter.WorkListOrder order) {
+        return order == Parameter.WorkListOrder.PRIORITY || order == Parameter.WorkListOrder.COST;
+    }
+
+    public E poll() {
+        if (isBestFirst(order)) {
+            Entry<E> entry = heap.poll();
+            return entry == null ? null : entry.element();
+        }
+        return deque.pollFirst();
+    }
+
+    public boolean hasSeen(E element) {
+        return seen.contains(element);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return isBestFirst(order) ? heap.size() : deque.size();
+    }
+}
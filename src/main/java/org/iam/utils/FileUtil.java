@@ -6,6 +6,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 public class FileUtil {
     public static List<String> getFileNames(Path directoryPath) {
@@ -88,13 +89,7 @@ public class FileUtil {
      * @return The processed file name with .csv extension and "_time" appended.
      */
     public static String changeToCsvWithTime(String fileName) {
-        int dotIndex = fileName.lastIndexOf('.');
-        String baseName = dotIndex != -1 ? fileName.substring(0, dotIndex) : fileName;
-        baseName += switch (Parameter.getActiveSolver()) {
-            case Z3 -> "_z3";
-            case CVC5 -> "_cvc5";
-        };
-        return baseName + "_time.csv";
+        return baseNameWithSolver(fileName) + "_time.csv";
     }
 
     /**
@@ -104,12 +99,35 @@ public class FileUtil {
      * @return The processed file name with .json extension and "_findings" appended.
      */
     public static String changeToJsonWithFindings(String fileName) {
+        return baseNameWithSolver(fileName) + "_findings.json";
+    }
+
+    /**
+     * Change the file extension to .json and append "_stats" to the base name.
+     *
+     * @param fileName The original file name.
+     * @return The processed file name with .json extension and "_stats" appended.
+     */
+    public static String changeToJsonWithStats(String fileName) {
+        return baseNameWithSolver(fileName) + "_stats.json";
+    }
+
+    /**
+     * Change the file extension to .json and append "_frontier" to the base name.
+     *
+     * @param fileName The original file name.
+     * @return The processed file name with .json extension and "_frontier" appended.
+     */
+    public static String changeToJsonWithFrontier(String fileName) {
+        return baseNameWithSolver(fileName) + "_frontier.json";
+    }
+
+    /**
+     * Strip the file extension and append the active solver's suffix, e.g. "_z3".
+     */
+    private static String baseNameWithSolver(String fileName) {
         int dotIndex = fileName.lastIndexOf('.');
         String baseName = dotIndex != -1 ? fileName.substring(0, dotIndex) : fileName;
-        baseName += switch (Parameter.getActiveSolver()) {
-            case Z3 -> "_z3";
-            case CVC5 -> "_cvc5";
-        };
-        return baseName + "_findings.json";
+        return baseName + "_" + Parameter.getActiveSolver().name().toLowerCase(Locale.ROOT);
     }
 }
@@ -1,5 +1,6 @@
 package org.iam.utils;
 
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.logging.Logger;
 
@@ -7,6 +8,22 @@ public class Parameter {
     public static String timeLog = "";
     public static Logger LOGGER = Logger.getLogger("Findings Miner");
     public static boolean isReduced = false;
+    public static int threads = 1;
+    public static WorkListOrder workListOrder = WorkListOrder.FIFO;
+    public static Path relationCache = null;
+    // Maximum number of memoized solver decisions, 0 disables the query cache.
+    public static int queryCacheSize = 0;
+    public static Path portfolioStats = null;
+    // Limits of a single solver query and of each phase (relations and mining, then reduction); 0 means unbounded.
+    public static int queryTimeout = 0;
+    public static int queryRlimit = 0;
+    public static int phaseTimeout = 0;
+    // Budget of the mining phase in encoder checks (relations, search and subsumption), 0 means unbounded.
+    public static int callBudget = 0;
+    // Reduction: skip the exact set cover and keep the heuristic one, or bound the exact one (0 is unbounded).
+    public static boolean isGreedyCover = false;
+    public static int coverTimeout = 0;
+    public static boolean isInstrumented = false;
     private static SolverType activeSolver = SolverType.Z3;
 
     public static void setActiveSolver(SolverType solver) {
@@ -20,6 +37,17 @@ public class Parameter {
 
     public enum SolverType {
         Z3,
-        CVC5
+        CVC5,
+        PORTFOLIO,
+        AUTOMATA
+    }
+
+    public enum WorkListOrder {
+        FIFO,
+        LIFO,
+        // Best-first: the most general findings first.
+        PRIORITY,
+        // Best-first: the findings with the cheapest estimated check first.
+        COST
     }
 }
@@ -0,0 +1,91 @@
+package org.iam.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.iam.common.apis.SolverStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts, latency histograms and SAT/UNSAT outcomes per encoder method, filled by
+ * InstrumentedEncoder. One instance may be shared by the encoders of all mining threads.
+ * Latencies are counted in power-of-two buckets of nanoseconds.
+ */
+public class SolverMetrics {
+    private static final int BUCKETS = 64;
+
+    private static class MethodStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        final AtomicLongArray outcomes = new AtomicLongArray(SolverStatus.values().length);
+    }
+
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    public void record(String method, long nanos) {
+        MethodStats stats = methods.computeIfAbsent(method, k -> new MethodStats());
+        stats.calls.increment();
+        stats.totalNanos.add(nanos);
+        stats.histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0))));
+    }
+
+    public void record(String method, long nanos, SolverStatus outcome) {
+        record(method, nanos);
+        methods.get(method).outcomes.incrementAndGet(outcome.ordinal());
+    }
+
+    public long getCalls(String method) {
+        MethodStats stats = methods.get(method);
+        return stats == null ? 0 : stats.calls.sum();
+    }
+
+    /**
+     * Writes the method statistics and the phase totals of the time measure as JSON.
+     */
+    public void writeToFile(Path path, TimeMeasure timeMeasure) throws IOException {
+        Map<String, Object> phases = new LinkedHashMap<>();
+        timeMeasure.getPhases().forEach((phase, nanos) -> phases.put(phase, nanos / 1e9));
+
+        Map<String, Object> methodMap = new TreeMap<>();
+        methods.forEach((method, stats) -> methodMap.put(method, toMap(stats)));
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("PhaseSeconds", phases);
+        root.put("Methods", methodMap);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), root);
+    }
+
+    private static Map<String, Object> toMap(MethodStats stats) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        long calls = stats.calls.sum();
+        map.put("Calls", calls);
+        map.put("TotalSeconds", stats.totalNanos.sum() / 1e9);
+
+        long sat = stats.outcomes.get(SolverStatus.SAT.ordinal());
+        long unsat = stats.outcomes.get(SolverStatus.UNSAT.ordinal());
+        long unknown = stats.outcomes.get(SolverStatus.UNKNOWN.ordinal());
+        if (sat + unsat + unknown > 0) {
+            map.put("Sat", sat);
+            map.put("Unsat", unsat);
+            map.put("Unknown", unknown);
+            map.put("SatRatio", (double) sat / (sat + unsat + unknown));
+        }
+
+        // Bucket i holds the calls that took less than 2^i nanoseconds (and at least 2^(i-1)).
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = stats.histogram.get(i);
+            if (count > 0) {
+                histogram.put("<" + (1L << i) + "ns", count);
+            }
+        }
+        map.put("Latency", histogram);
+        return map;
+    }
+}
@@ -0,0 +1,48 @@
+package org.iam.utils;
+
+import org.iam.common.AutomataEncoder;
+import org.iam.common.CVC5Encoder;
+import org.iam.common.PortfolioEncoder;
+import org.iam.common.PortfolioStats;
+import org.iam.common.Z3Encoder;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.apis.SolverLimits;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The solver backends by SolverType. Encoders are created on demand, as CmdRun did before, so a run
+ * still only initializes the backend it uses and loads that backend's JNI libraries; the registry only
+ * lets a backend be added or replaced without touching CmdRun.
+ */
+public class SolverProviders {
+    @FunctionalInterface
+    public interface Provider {
+        EncodedAPI<?> create(SolverLimits limits) throws IOException;
+    }
+
+    private static final Map<Parameter.SolverType, Provider> PROVIDERS = new EnumMap<>(Parameter.SolverType.class);
+
+    static {
+        register(Parameter.SolverType.Z3, limits -> new Z3Encoder(limits));
+        register(Parameter.SolverType.CVC5, limits -> new CVC5Encoder(limits));
+        register(Parameter.SolverType.PORTFOLIO,
+                limits -> new PortfolioEncoder(PortfolioStats.load(Parameter.portfolioStats), limits));
+        register(Parameter.SolverType.AUTOMATA, limits -> new AutomataEncoder());
+    }
+
+    public static synchronized void register(Parameter.SolverType solver, Provider provider) {
+        PROVIDERS.put(solver, provider);
+    }
+
+    public static synchronized EncodedAPI<?> create(Parameter.SolverType solver, SolverLimits limits)
+            throws IOException {
+        Provider provider = PROVIDERS.get(solver);
+        if (provider == null) {
+            throw new IllegalArgumentException("No provider registered for solver " + solver);
+        }
+        return provider.create(limits);
+    }
+}
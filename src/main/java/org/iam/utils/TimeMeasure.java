@@ -4,7 +4,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TimeMeasure {
     /**
@@ -24,6 +26,8 @@ public class TimeMeasure {
 
     private final List<RoundTime> rounds = new ArrayList<>();
     private long totalTime = 0;
+    // Accumulated time per phase (parsing, relations, mining, ...), in order of first occurrence.
+    private final Map<String, Long> phases = new LinkedHashMap<>();
 
     public void setWholeTime(long wholeTime) {
         this.wholeTime = wholeTime;
@@ -34,6 +38,14 @@ public class TimeMeasure {
         rounds.add(new RoundTime(singleRound, totalTime));
     }
 
+    public void addPhase(String phase, long time) {
+        phases.merge(phase, time, Long::sum);
+    }
+
+    public Map<String, Long> getPhases() {
+        return phases;
+    }
+
     public void writeToFile(String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
             writer.println("SingleRound,AllRound,WholeTime");
@@ -0,0 +1,60 @@
+package org.iam.common;
+
+import org.iam.common.apis.CheckResult;
+import org.iam.common.apis.SolverStatus;
+import org.iam.common.automata.BddNode;
+import org.iam.common.vars.VarKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class AutomataEncoderTest {
+    @Test
+    public void testStringConstraints() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        BddNode get = encoder.mkReMatch("action", "s3:Get*");
+        BddNode getObject = encoder.mkStringEq("action", "s3:GetObject");
+        Assertions.assertTrue(encoder.check(encoder.and(get, encoder.not(getObject))));
+        Assertions.assertFalse(encoder.check(encoder.and(getObject, encoder.not(get))));
+        Assertions.assertFalse(encoder.check(encoder.and(get, encoder.mkReMatch("action", "s3:Put*"))));
+        Assertions.assertTrue(encoder.check(encoder.and(get, encoder.mkReMatch("action", "*Object"))));
+        Assertions.assertTrue(encoder.check(encoder.and(
+                encoder.mkStringEqIgnoreCase("action", "ab"), encoder.not(encoder.mkStringEq("action", "ab")))));
+        Assertions.assertFalse(encoder.check(encoder.and(
+                encoder.mkReMatch("action", "?"), encoder.mkStringEq("action", ""))));
+        Assertions.assertTrue(encoder.greaterEquals(VarKey.ACTION, "a*b*c", "a?b?c"));
+        Assertions.assertFalse(encoder.greaterEquals(VarKey.ACTION, "a?b?c", "a*b*c"));
+    }
+
+    @Test
+    public void testIpConstraints() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        BddNode wide = encoder.mkIpMatch("ip", "10.0.0.0/8");
+        BddNode narrow = encoder.mkIpMatch("ip", "10.1.0.0/16");
+        Assertions.assertTrue(encoder.greaterThan(wide, narrow));
+        Assertions.assertFalse(encoder.check(encoder.and(narrow, encoder.not(wide))));
+        Assertions.assertFalse(encoder.check(encoder.and(wide, encoder.mkIpMatch("ip", "192.168.0.0/16"))));
+        Assertions.assertTrue(encoder.check(encoder.or(narrow, encoder.mkIpMatch("ip", "bad"))));
+    }
+
+    @Test
+    public void testBase() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        encoder.setBase(encoder.not(encoder.mkReMatch("resource", "arn:*")));
+        Assertions.assertFalse(encoder.checkWithBase(encoder.mkReMatch("resource", "arn:aws:*")));
+        Assertions.assertTrue(encoder.checkWithBase(encoder.mkReMatch("resource", "*:aws:*")));
+        encoder.clearBase();
+        Assertions.assertTrue(encoder.checkWithBase(encoder.mkReMatch("resource", "arn:aws:*")));
+    }
+
+    @Test
+    public void testModelKeepsStringAndIpVariablesApart() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        CheckResult result = encoder.checkPartsWithBase(List.of(
+                encoder.mkStringEq("source", "gateway"), encoder.mkIpMatch("source", "10.1.0.0/16")));
+        Assertions.assertEquals(SolverStatus.SAT, result.status());
+        Assertions.assertEquals("gateway", result.model().get("source"));
+        Assertions.assertEquals("10.1.0.0", result.model().get(CheckResult.ipVariable("source")));
+    }
+}
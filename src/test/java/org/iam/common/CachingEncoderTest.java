@@ -0,0 +1,35 @@
+package org.iam.common;
+
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.automata.BddNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CachingEncoderTest {
+    @Test
+    public void testRepeatedQueriesHitTheCache() {
+        CachingEncoder<BddNode> encoder = new CachingEncoder<>(new AutomataEncoder(), 16);
+        BddNode get = encoder.mkReMatch("action", "s3:Get*");
+        BddNode getObject = encoder.mkStringEq("action", "s3:GetObject");
+        Assertions.assertTrue(encoder.greaterEquals(get, getObject));
+        Assertions.assertTrue(encoder.greaterEquals(get, getObject));
+        Assertions.assertFalse(encoder.greaterEquals(getObject, get));
+        Assertions.assertEquals(1, encoder.getHits());
+        Assertions.assertEquals(2, encoder.getMisses());
+        Assertions.assertEquals(2, encoder.size());
+    }
+
+    @Test
+    public void testForksCountIntoTheSameCounters() {
+        CachingEncoder<BddNode> encoder = new CachingEncoder<>(new AutomataEncoder(), 16);
+        encoder.check(encoder.mkReMatch("action", "s3:Get*"));
+        EncodedAPI<BddNode> fork = encoder.fork();
+        BddNode put = fork.mkReMatch("action", "s3:Put*");
+        fork.check(put);
+        fork.check(put);
+        Assertions.assertEquals(1, encoder.getHits());
+        Assertions.assertEquals(2, encoder.getMisses());
+        // The fork's decisions are kept in a cache of its own.
+        Assertions.assertEquals(1, encoder.size());
+    }
+}
@@ -0,0 +1,39 @@
+package org.iam.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class IpRangeSetTest {
+    @Test
+    public void testCidrContainment() {
+        Assertions.assertTrue(IpRangeSet.greaterEquals("0.0.0.0/0", "10.0.0.0/8"));
+        Assertions.assertTrue(IpRangeSet.greaterEquals("10.0.0.0/8", "10.1.2.0/24"));
+        Assertions.assertTrue(IpRangeSet.greaterEquals("10.1.2.0/24", "10.1.2.3"));
+        Assertions.assertFalse(IpRangeSet.greaterEquals("10.1.2.0/24", "10.1.0.0/16"));
+        Assertions.assertTrue(IpRangeSet.greaterEquals("10.1.2.7/24", "10.1.2.0/24"));
+        Assertions.assertFalse(IpRangeSet.greaterThan("10.1.2.7/24", "10.1.2.0/24"));
+        Assertions.assertTrue(IpRangeSet.greaterThan("10.0.0.0/8", "10.0.0.0/9"));
+    }
+
+    @Test
+    public void testSetOperations() {
+        IpRangeSet halves = IpRangeSet.ofCidrs(List.of("10.0.0.0/9", "10.128.0.0/9"));
+        Assertions.assertEquals(IpRangeSet.ofCidr("10.0.0.0/8"), halves);
+        Assertions.assertTrue(IpRangeSet.ofCidr("10.0.0.0/8").minus(halves).isEmpty());
+
+        IpRangeSet notPrivate = IpRangeSet.ofCidr("10.0.0.0/8").complement();
+        Assertions.assertFalse(notPrivate.intersects(IpRangeSet.ofCidr("10.3.0.0/16")));
+        Assertions.assertTrue(notPrivate.contains(IpRangeSet.ipToLong("11.0.0.0")));
+        Assertions.assertEquals(IpRangeSet.ALL, notPrivate.union(halves));
+        Assertions.assertEquals(IpRangeSet.ALL, IpRangeSet.EMPTY.complement());
+    }
+
+    @Test
+    public void testMalformedCidr() {
+        Assertions.assertTrue(IpRangeSet.ofCidr("10.0.0/8").isEmpty());
+        Assertions.assertTrue(IpRangeSet.ofCidr("10.0.0.0/33").isEmpty());
+        Assertions.assertTrue(IpRangeSet.ofCidr("300.0.0.0/8").isEmpty());
+    }
+}
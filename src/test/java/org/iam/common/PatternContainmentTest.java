@@ -0,0 +1,42 @@
+package org.iam.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PatternContainmentTest {
+    @Test
+    public void testMatches() {
+        Assertions.assertTrue(PatternContainment.matches("s3:Get*", "s3:GetObject"));
+        Assertions.assertTrue(PatternContainment.matches("s3:Get*", "s3:Get"));
+        Assertions.assertFalse(PatternContainment.matches("s3:Get*", "s3:PutObject"));
+        Assertions.assertTrue(PatternContainment.matches("a?c", "abc"));
+        Assertions.assertFalse(PatternContainment.matches("a?c", "ac"));
+        Assertions.assertTrue(PatternContainment.matches("?", "abc"));
+        Assertions.assertFalse(PatternContainment.matches("?", ""));
+    }
+
+    @Test
+    public void testGreaterEquals() {
+        Assertions.assertTrue(PatternContainment.greaterEquals("*", "s3:Get*"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("s3:Get*", "*"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("s3:*", "s3:Get*"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("s3:Get*", "s3:GetObject"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("s3:GetObject", "s3:Get*"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("*Object", "s3:Get*Object"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("*Object", "s3:Get*"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("a*b*c", "a?b?c"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("a?b?c", "a*b*c"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("?", "a*"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("a*", "?"));
+        Assertions.assertTrue(PatternContainment.greaterEquals("*a*", "*a*a*"));
+        Assertions.assertFalse(PatternContainment.greaterEquals("*a*a*", "*a*"));
+    }
+
+    @Test
+    public void testGreaterThan() {
+        Assertions.assertTrue(PatternContainment.greaterThan("s3:*", "s3:Get*"));
+        Assertions.assertFalse(PatternContainment.greaterThan("s3:Get*", "s3:Get*"));
+        Assertions.assertFalse(PatternContainment.greaterThan("*a**", "*a*"));
+        Assertions.assertFalse(PatternContainment.greaterThan("s3:Get*", "s3:Put*"));
+    }
+}
@@ -0,0 +1,86 @@
+package org.iam.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class SetCoverSolverTest {
+    private static BitSet bits(int... elements) {
+        BitSet bits = new BitSet();
+        for (int element : elements) {
+            bits.set(element);
+        }
+        return bits;
+    }
+
+    private static boolean covers(Map<Object, BitSet> cover, BitSet universe) {
+        BitSet uncovered = (BitSet) universe.clone();
+        cover.values().forEach(uncovered::andNot);
+        return uncovered.isEmpty();
+    }
+
+    private static int optimum(Map<Object, BitSet> subsets, BitSet universe) {
+        BitSet[] columns = subsets.values().toArray(new BitSet[0]);
+        int best = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 1 << columns.length; mask++) {
+            BitSet union = new BitSet();
+            for (int i = 0; i < columns.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    union.or(columns[i]);
+                }
+            }
+            union.and(universe);
+            if (union.equals(universe)) {
+                best = Math.min(best, Integer.bitCount(mask));
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testReductions() {
+        Map<Object, BitSet> subsets = new HashMap<>();
+        subsets.put("essential", bits(0, 1));
+        subsets.put("dominated", bits(2));
+        subsets.put("duplicate", bits(2, 3));
+        subsets.put("other", bits(2, 3));
+        subsets.put("outside", bits(9));
+        BitSet universe = bits(0, 1, 2, 3, 4);
+
+        // Element 4 cannot be covered and is left out.
+        Map<Object, BitSet> cover = SetCoverSolver.solve(subsets, universe, false, 0);
+        Assertions.assertEquals(2, cover.size());
+        Assertions.assertTrue(cover.containsKey("essential"));
+        Assertions.assertTrue(covers(cover, bits(0, 1, 2, 3)));
+    }
+
+    @Test
+    public void testRandomInstances() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            Map<Object, BitSet> subsets = new HashMap<>();
+            BitSet universe = new BitSet();
+            for (int i = 0; i < 10; i++) {
+                BitSet subset = new BitSet();
+                for (int e = 0; e < 16; e++) {
+                    if (random.nextInt(4) == 0) {
+                        subset.set(e);
+                        universe.set(e);
+                    }
+                }
+                subsets.put(i, subset);
+            }
+            int optimum = optimum(subsets, universe);
+            Map<Object, BitSet> heuristic = SetCoverSolver.solve(subsets, universe, false, 0);
+            Assertions.assertTrue(covers(heuristic, universe));
+            Assertions.assertTrue(heuristic.size() >= optimum);
+            Map<Object, BitSet> exact = SetCoverSolver.solve(subsets, universe);
+            Assertions.assertTrue(covers(exact, universe));
+            Assertions.assertEquals(optimum, exact.size());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.iam.common;
+
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.automata.BddNode;
+import org.iam.common.reduce.StaticVar;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VarAtomicPredicatesTest {
+    private static StaticVar<BddNode> var(BddNode expr) {
+        return new StaticVar.Builder<BddNode>().setExpr(expr).build();
+    }
+
+    @Test
+    public void testPartition() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        StaticVar<BddNode> get = var(encoder.mkReMatch("action", "s3:Get*"));
+        StaticVar<BddNode> getObject = var(encoder.mkStringEq("action", "s3:GetObject"));
+        StaticVar<BddNode> put = var(encoder.mkReMatch("action", "s3:Put*"));
+        StaticVar<BddNode> logicTrue = var(encoder.mkTrue());
+        Set<StaticVar<BddNode>> vars = new LinkedHashSet<>();
+        vars.add(get);
+        vars.add(getObject);
+        vars.add(put);
+
+        VarAtomicPredicates<BddNode> atomicPredicates = new VarAtomicPredicates<>(vars, logicTrue, encoder);
+        Map<StaticVar<BddNode>, BitSet> varToPredicates = atomicPredicates.getAtomicPredicates();
+
+        // s3:GetObject, the rest of s3:Get*, s3:Put* and everything else.
+        Assertions.assertEquals(4, atomicPredicates.getNumAtomicPredicates());
+        Assertions.assertEquals(2, varToPredicates.get(get).cardinality());
+        Assertions.assertEquals(1, varToPredicates.get(getObject).cardinality());
+        Assertions.assertEquals(1, varToPredicates.get(put).cardinality());
+        Assertions.assertEquals(4, varToPredicates.get(logicTrue).cardinality());
+
+        BitSet getObjectInGet = (BitSet) varToPredicates.get(getObject).clone();
+        getObjectInGet.andNot(varToPredicates.get(get));
+        Assertions.assertTrue(getObjectInGet.isEmpty());
+        Assertions.assertFalse(varToPredicates.get(get).intersects(varToPredicates.get(put)));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        AutomataEncoder encoder = new AutomataEncoder();
+        Set<StaticVar<BddNode>> vars = new LinkedHashSet<>();
+        String[] patterns = {"s3:*", "s3:Get*", "s3:GetObject", "s3:Put*", "*Object", "*Bucket", "s3:List*",
+                "ec2:*", "ec2:Describe*", "*:Describe*", "s3:?etObject", "iam:*", "*", "s3:ListBucket"};
+        for (String pattern : patterns) {
+            vars.add(var(encoder.mkReMatch("action", pattern)));
+        }
+        StaticVar<BddNode> logicTrue = var(encoder.mkTrue());
+
+        VarAtomicPredicates<BddNode> sequential = new VarAtomicPredicates<>(vars, logicTrue, encoder);
+        VarAtomicPredicates<BddNode> parallel = new VarAtomicPredicates<>(vars, logicTrue, encoder, 4);
+        Assertions.assertEquals(sequential.getNumAtomicPredicates(), parallel.getNumAtomicPredicates());
+        Assertions.assertEquals(sequential.getAtomicPredicates(), parallel.getAtomicPredicates());
+    }
+
+    @Test
+    public void testParallelForksOneEncoderPerThread() {
+        AutomataEncoder automata = new AutomataEncoder();
+        AtomicInteger forks = new AtomicInteger();
+        EncodedAPI<BddNode> encoder = new ForwardingEncoder<>(automata) {
+            @Override
+            public EncodedAPI<BddNode> fork() {
+                forks.incrementAndGet();
+                return automata.fork();
+            }
+        };
+        Set<StaticVar<BddNode>> vars = new LinkedHashSet<>();
+        for (int i = 0; i < 64; i++) {
+            vars.add(var(automata.mkStringEq("action", "s3:Action" + i)));
+        }
+
+        new VarAtomicPredicates<>(vars, var(automata.mkTrue()), encoder, 4);
+        // One per pool thread, plus the calling thread if it helps out with the root task.
+        Assertions.assertTrue(forks.get() <= 5, forks.get() + " forks");
+    }
+}
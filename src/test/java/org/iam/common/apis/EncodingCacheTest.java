@@ -0,0 +1,28 @@
+package org.iam.common.apis;
+
+import org.iam.common.AutomataEncoder;
+import org.iam.common.automata.BddNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EncodingCacheTest {
+    @Test
+    public void testEncodesOncePerEncoder() {
+        EncodingCache<BddNode> cache = new EncodingCache<>();
+        AtomicInteger encodings = new AtomicInteger();
+        AutomataEncoder first = new AutomataEncoder();
+        AutomataEncoder second = new AutomataEncoder();
+        for (int round = 0; round < 3; round++) {
+            for (AutomataEncoder encoder : new AutomataEncoder[]{first, second}) {
+                BddNode expr = cache.get(encoder, helper -> {
+                    encodings.incrementAndGet();
+                    return helper.mkReMatch("action", "s3:Get*");
+                });
+                Assertions.assertSame(encoder.mkReMatch("action", "s3:Get*"), expr);
+            }
+        }
+        Assertions.assertEquals(2, encodings.get());
+    }
+}
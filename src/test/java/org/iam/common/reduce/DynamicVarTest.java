@@ -0,0 +1,57 @@
+package org.iam.common.reduce;
+
+import org.iam.common.AutomataEncoder;
+import org.iam.common.ForwardingEncoder;
+import org.iam.common.apis.EncodedAPI;
+import org.iam.common.automata.BddNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class DynamicVarTest {
+    private static class CountingEncoder extends ForwardingEncoder<BddNode> {
+        private int checks = 0;
+
+        private CountingEncoder() {
+            super(new AutomataEncoder());
+        }
+
+        @Override
+        public Boolean check(BddNode expr) {
+            checks++;
+            return super.check(expr);
+        }
+
+        @Override
+        public EncodedAPI<BddNode> fork() {
+            return this;
+        }
+    }
+
+    @Test
+    public void testEmptinessShortCircuits() {
+        CountingEncoder encoder = new CountingEncoder();
+        Map<BddNode, Boolean> decisions = new HashMap<>();
+        DynamicVar<BddNode> get = new DynamicVar<>(encoder, encoder.mkReMatch("action", "s3:Get*"), decisions);
+        DynamicVar<BddNode> put = new DynamicVar<>(encoder, encoder.mkReMatch("action", "s3:Put*"), decisions);
+
+        DynamicVar<BddNode> none = get.inter(put);
+        Assertions.assertTrue(none.isEmpty());
+        Assertions.assertTrue(none.isEmpty());
+        Assertions.assertEquals(1, encoder.checks);
+
+        // Decided from what is known already.
+        Assertions.assertTrue(none.inter(get).isEmpty());
+        Assertions.assertTrue(get.minus(get).isEmpty());
+        Assertions.assertTrue(get.inter(put).minus(put).isEmpty());
+        Assertions.assertEquals(1, encoder.checks);
+
+        // A structurally equal formula shares the decision.
+        Assertions.assertTrue(put.inter(get).isEmpty());
+        Assertions.assertFalse(get.minus(put).isEmpty());
+        Assertions.assertFalse(new DynamicVar<>(encoder, get.minus(put).getValue(), decisions).isEmpty());
+        Assertions.assertEquals(2, encoder.checks);
+    }
+}
@@ -0,0 +1,145 @@
+package org.iam.core;
+
+import org.iam.common.AutomataEncoder;
+import org.iam.common.automata.BddNode;
+import org.iam.common.basetypes.Finding;
+import org.iam.common.basetypes.Policy;
+import org.iam.common.vars.VarKey;
+import org.iam.utils.Parameter;
+import org.iam.utils.PolicyParser;
+import org.iam.utils.TimeMeasure;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class MinerTest {
+    private static final String ALLOW = "org.iam.core/allow.json";
+    private static final String SUBSUMED = "org.iam.core/subsumed.json";
+
+    private static final Set<Map<VarKey, String>> ALLOW_FINDINGS = Set.of(
+            finding("arn:aws:iam::111122223333:root", "s3:Get*", "arn:aws:s3:::bucket/*", "*", "10.0.0.0/8"),
+            finding("arn:aws:iam::111122223333:root", "s3:List*", "arn:aws:s3:::bucket/*", "*", "10.0.0.0/8"),
+            finding("arn:aws:iam::444455556666:user/*", "s3:Get*", "arn:aws:s3:::bucket/*", "*", "10.0.0.0/8"),
+            finding("arn:aws:iam::444455556666:user/*", "s3:List*", "arn:aws:s3:::bucket/*", "*", "10.0.0.0/8"),
+            finding("arn:aws:iam::777788889999:user/bob", "s3:PutObject", "arn:aws:s3:::bucket/uploads/*",
+                    "arn:aws:iam::777788889999:user/b*", "0.0.0.0/0"),
+            finding("*", "s3:GetObject", "arn:aws:s3:::bucket/public/*", "*", "192.168.0.0/16"),
+            finding("*", "s3:GetObject", "arn:aws:s3:::bucket/public/*", "*", "10.1.0.0/16"));
+
+    private Parameter.SolverType solver;
+
+    @BeforeEach
+    public void setUp() {
+        solver = Parameter.getActiveSolver();
+        Parameter.setActiveSolver(Parameter.SolverType.AUTOMATA);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Parameter.setActiveSolver(solver);
+        Parameter.threads = 1;
+        Parameter.workListOrder = Parameter.WorkListOrder.FIFO;
+        Parameter.callBudget = 0;
+        Parameter.phaseTimeout = 0;
+    }
+
+    private static Map<VarKey, String> finding(String principal, String action, String resource,
+                                               String principalArn, String sourceIp) {
+        return Map.of(VarKey.AWS, principal, VarKey.ACTION, action, VarKey.RESOURCE, resource,
+                VarKey.AWS_PRINCIPAL_ARN, principalArn, VarKey.AWS_SOURCE_IP, sourceIp);
+    }
+
+    private static Policy<BddNode> policy(String resource) {
+        @SuppressWarnings("unchecked")
+        Policy<BddNode> policy = PolicyParser.parseInput(PolicyParser.getTestFile(resource));
+        return policy;
+    }
+
+    private static Set<Map<VarKey, String>> values(Set<Finding<?>> findings) {
+        return findings.stream().map(Finding::getFinding).collect(Collectors.toSet());
+    }
+
+    private static Set<Map<VarKey, String>> mine(String resource) {
+        return values(new Miner().mineIntent(policy(resource), new TimeMeasure(), new AutomataEncoder()));
+    }
+
+    @Test
+    public void testEveryOrderAndThreadCountFindsTheMaximalAntichain() {
+        for (Parameter.WorkListOrder order : Parameter.WorkListOrder.values()) {
+            for (int threads : new int[]{1, 4}) {
+                Parameter.workListOrder = order;
+                Parameter.threads = threads;
+                Assertions.assertEquals(ALLOW_FINDINGS, mine(ALLOW), order + ", " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    public void testSubsumedStatementIsNoFinding() {
+        Set<Map<VarKey, String>> expected = Set.of(Map.of(VarKey.AWS, "*", VarKey.ACTION, "s3:Get*",
+                VarKey.RESOURCE, "arn:aws:s3:::bucket/*", VarKey.AWS_SOURCE_IP, "10.0.0.0/8"));
+        for (int threads : new int[]{1, 4}) {
+            Parameter.threads = threads;
+            Assertions.assertEquals(expected, mine(SUBSUMED), threads + " threads");
+        }
+    }
+
+    @Test
+    public void testSolverSkipsAndPruning() {
+        Miner miner = new Miner();
+        miner.mineIntent(policy(ALLOW), new TimeMeasure(), new AutomataEncoder());
+        Assertions.assertTrue(miner.getCoreAnswers() > 0);
+        Assertions.assertTrue(miner.getEmptySubtrees() > 0);
+        Assertions.assertTrue(miner.getApproximateFindings().isEmpty());
+        Assertions.assertTrue(miner.getFrontier().isEmpty());
+    }
+
+    @Test
+    public void testGenerousBudgetsChangeNothing() {
+        for (int threads : new int[]{1, 4}) {
+            Parameter.threads = threads;
+            Parameter.callBudget = 1_000_000;
+            Parameter.phaseTimeout = 600_000;
+            Miner miner = new Miner();
+            Set<Finding<?>> findings = miner.mineIntent(policy(ALLOW), new TimeMeasure(), new AutomataEncoder());
+            Assertions.assertEquals(ALLOW_FINDINGS, values(findings), threads + " threads");
+            Assertions.assertTrue(miner.getFrontier().isEmpty());
+        }
+    }
+
+    @Test
+    public void testExhaustedBudgetOverApproximates() {
+        for (Parameter.WorkListOrder order : Parameter.WorkListOrder.values()) {
+            for (int threads : new int[]{1, 4}) {
+                Parameter.workListOrder = order;
+                Parameter.threads = threads;
+                Parameter.callBudget = 40;
+                String run = order + ", " + threads + " threads";
+                Miner miner = new Miner();
+                AutomataEncoder encoder = new AutomataEncoder();
+                @SuppressWarnings("unchecked")
+                Set<Finding<BddNode>> findings = (Set<Finding<BddNode>>) (Set<?>)
+                        miner.mineIntent(policy(ALLOW), new TimeMeasure(), encoder);
+
+                Assertions.assertFalse(miner.getFrontier().isEmpty(), run);
+                Assertions.assertTrue(findings.containsAll(miner.getFrontier()), run);
+                Assertions.assertTrue(miner.getApproximateFindings().containsAll(miner.getFrontier()), run);
+                // Every exact finding lies below some reported one.
+                Parameter.callBudget = 0;
+                @SuppressWarnings("unchecked")
+                Set<Finding<BddNode>> exact = (Set<Finding<BddNode>>) (Set<?>)
+                        new Miner().mineIntent(policy(ALLOW), new TimeMeasure(), encoder);
+                for (Finding<BddNode> finding : exact) {
+                    Assertions.assertTrue(findings.stream().anyMatch(reported ->
+                            encoder.greaterEquals(reported.encode(encoder), finding.encode(encoder))),
+                            run + ": " + finding.getFinding());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.iam.core;
+
+import org.iam.common.vars.VarKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class RelationCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = tempDir.resolve("relations.bin");
+        try (RelationCache cache = RelationCache.open(path)) {
+            cache.put(VarKey.ACTION, "s3:Get*", "s3:GetObject*", true);
+            cache.put(VarKey.RESOURCE, "arn:aws:s3:::a?c", "arn:aws:s3:::*", false);
+        }
+        try (RelationCache cache = RelationCache.open(path)) {
+            cache.put(VarKey.ACTION, "ec2:Describe*", "ec2:DescribeInstances", true);
+        }
+
+        RelationCache cache = RelationCache.open(path);
+        Assertions.assertEquals(3, cache.size());
+        Assertions.assertEquals(true, cache.get(VarKey.ACTION, "s3:Get*", "s3:GetObject*"));
+        Assertions.assertEquals(false, cache.get(VarKey.RESOURCE, "arn:aws:s3:::a?c", "arn:aws:s3:::*"));
+        Assertions.assertNull(cache.get(VarKey.ACTION, "s3:GetObject*", "s3:Get*"));
+    }
+
+    @Test
+    public void testTruncatedRecordIsIgnored() throws IOException {
+        Path path = tempDir.resolve("relations.bin");
+        try (RelationCache cache = RelationCache.open(path)) {
+            cache.put(VarKey.ACTION, "s3:*", "s3:Get*", true);
+            cache.put(VarKey.ACTION, "s3:Get*", "s3:*", false);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        RelationCache cache = RelationCache.open(path);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(true, cache.get(VarKey.ACTION, "s3:*", "s3:Get*"));
+
+        // The next flush cuts the torn record off, so later records are read back correctly.
+        cache.put(VarKey.RESOURCE, "arn:*", "arn:aws:s3:::a", true);
+        cache.close();
+        cache = RelationCache.open(path);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(true, cache.get(VarKey.RESOURCE, "arn:*", "arn:aws:s3:::a"));
+    }
+
+    @Test
+    public void testOtherVersionIsIgnoredAndKept() throws IOException {
+        Path path = tempDir.resolve("relations.bin");
+        // A version 1 cache, which stored VarKey ordinals.
+        byte[] old = ByteBuffer.allocate(14).putInt(0x4B565243).putInt(1)
+                .put((byte) 1).put((byte) 1).putShort((short) 0).putShort((short) 0).array();
+        Files.write(path, old);
+
+        try (RelationCache cache = RelationCache.open(path)) {
+            Assertions.assertEquals(0, cache.size());
+            cache.put(VarKey.ACTION, "s3:*", "s3:Get*", true);
+        }
+        Assertions.assertArrayEquals(old, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testRecordOfUnknownKeyIsSkipped() throws IOException {
+        Path path = tempDir.resolve("relations.bin");
+        try (RelationCache cache = RelationCache.open(path)) {
+            cache.put(VarKey.ACTION, "s3:*", "s3:Get*", true);
+        }
+        byte[] name = "NO_SUCH_KEY".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer record = ByteBuffer.allocate(2 + name.length + 6)
+                .put((byte) name.length).put(name).put((byte) 1)
+                .putShort((short) 1).put((byte) 'a').putShort((short) 1).put((byte) 'b').flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+        try (RelationCache cache = RelationCache.open(path)) {
+            cache.put(VarKey.RESOURCE, "arn:*", "arn:aws:s3:::a", true);
+        }
+
+        RelationCache cache = RelationCache.open(path);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(true, cache.get(VarKey.ACTION, "s3:*", "s3:Get*"));
+        Assertions.assertEquals(true, cache.get(VarKey.RESOURCE, "arn:*", "arn:aws:s3:::a"));
+    }
+}